@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures adding a new NChoiceBox to a showing scene, creating its skin in
+ * the layout pass and removing it again. The NChoiceBoxTest checks that the
+ * removed choice boxes are collected, this benchmark reports the latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChoiceBoxBenchmark {
+    private static final int          OPERATIONS = 16;
+    private static final List<String> ITEMS      = List.of("Item 1", "Item 2", "Item 3");
+    private              Stage        stage;
+    private              StackPane    root;
+
+
+    @Setup(Level.Trial) public void setup() throws InterruptedException {
+        FxPlatform.startup();
+        FxPlatform.runAndWait(() -> {
+            root  = new StackPane();
+            stage = new Stage();
+            stage.setScene(new Scene(root, 200, 100));
+            stage.show();
+        });
+    }
+
+    @TearDown(Level.Trial) public void tearDown() { FxPlatform.runAndWait(() -> stage.close()); }
+
+
+    @Benchmark @OperationsPerInvocation(OPERATIONS) public void addAndRemove() {
+        FxPlatform.runAndWait(() -> {
+            for (int i = 0 ; i < OPERATIONS ; i++) {
+                final NChoiceBox<String> choiceBox = new NChoiceBox<>(new ArrayList<>(ITEMS));
+                root.getChildren().add(choiceBox);
+                root.applyCss();
+                root.layout();
+                root.getChildren().remove(choiceBox);
+            }
+        });
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import eu.hansolo.fx.neumorphic.tools.SpriteCache;
+import javafx.scene.layout.Region;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures resize() and redraw() of all controls at different sizes.
+ * The benchmarks run on the FX application thread of a headless platform,
+ * every invocation executes OPERATIONS calls to amortize the thread hand over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlBenchmark {
+    private static final int      OPERATIONS = 16;
+
+    @Param({ "NButton", "NToggleButton", "NRadioButton", "NCheckBox", "NSwitch", "NTextField", "NChoiceBox", "NContainer" })
+    public               String   control;
+
+    @Param({ "32", "128", "512" })
+    public               int      size;
+
+    private              Region   region;
+    private              Runnable resize;
+    private              Runnable redraw;
+
+
+    @Setup(Level.Trial) public void setup() throws InterruptedException {
+        FxPlatform.startup();
+        FxPlatform.runAndWait(() -> {
+            switch (control) {
+                case "NButton"      : use(new NButton("Button"));       break;
+                case "NToggleButton": use(new NToggleButton("Toggle")); break;
+                case "NRadioButton" : use(new NRadioButton("Radio"));   break;
+                case "NCheckBox"    : use(new NCheckBox("Check"));      break;
+                case "NSwitch"      : use(new NSwitch());               break;
+                case "NTextField"   : use(new NTextField("Text"));      break;
+                case "NChoiceBox"   : use(new NChoiceBox<String>());    break;
+                case "NContainer"   : use(new NContainer());            break;
+                default             : throw new IllegalArgumentException("Unknown control " + control);
+            }
+            region.resize(size * 4, size);
+            resize.run();
+        });
+    }
+
+    @Setup(Level.Iteration) public void clearCaches() { FxPlatform.runAndWait(SpriteCache::clear); }
+
+
+    private void use(final NButton button) { region = button; resize = button::resize; redraw = button::redraw; }
+    private void use(final NToggleButton toggleButton) { region = toggleButton; resize = toggleButton::resize; redraw = toggleButton::redraw; }
+    private void use(final NCheckBox checkBox) { region = checkBox; resize = checkBox::resize; redraw = checkBox::redraw; }
+    private void use(final NSwitch nSwitch) { region = nSwitch; resize = nSwitch::resize; redraw = nSwitch::redraw; }
+    private void use(final NTextField textField) { region = textField; resize = textField::resize; redraw = textField::redraw; }
+    private void use(final NChoiceBox<String> choiceBox) { region = choiceBox; resize = choiceBox::resize; redraw = choiceBox::redraw; }
+    private void use(final NContainer container) { region = container; resize = container::resize; redraw = container::redraw; }
+
+
+    @Benchmark @OperationsPerInvocation(OPERATIONS) public void resize() {
+        FxPlatform.runAndWait(() -> { for (int i = 0 ; i < OPERATIONS ; i++) { resize.run(); } });
+    }
+
+    @Benchmark @OperationsPerInvocation(OPERATIONS) public void redraw() {
+        FxPlatform.runAndWait(() -> { for (int i = 0 ; i < OPERATIONS ; i++) { redraw.run(); } });
+    }
+
+    /**
+     * Resize with an empty sprite cache, measures the costs of rendering the shadows
+     */
+    @Benchmark @OperationsPerInvocation(OPERATIONS) public void resizeUncached() {
+        FxPlatform.runAndWait(() -> {
+            for (int i = 0 ; i < OPERATIONS ; i++) {
+                SpriteCache.clear();
+                resize.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.TilePane;
+import javafx.stage.Stage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+
+/**
+ * Builds large grids of controls in a stage on a headless platform (Monocle,
+ * software pipeline) and reports per pulse layout and render times, the
+ * growth of the heap and the allocation rate of the FX application thread.
+ * Every frame either toggles the state of all controls or resizes all cells.
+ * Layout time is measured between the pre and post layout pulse listeners of
+ * the scene (includes the coalesced redraws of the controls), render time is
+ * measured by rendering the scene into an image.
+ *
+ * Arguments (all optional):
+ *   --controls=NButton,NSwitch,NContainer
+ *   --counts=10000,50000,100000
+ *   --frames=60
+ */
+public class StressHarness {
+    private static final double              WIDTH        = 1280;
+    private static final double              HEIGHT       = 800;
+    private static final double              CELL_WIDTH   = 80;
+    private static final double              CELL_HEIGHT  = 32;
+    private static final double              FRAME_BUDGET = 16.0;
+    private        final String              controlName;
+    private        final int                 count;
+    private        final int                 frames;
+    private        final Supplier<Region>    factory;
+    private        final Consumer<Region>    toggle;
+    private        final double[]            layoutTimes;
+    private        final double[]            renderTimes;
+    private              Stage               stage;
+    private              Scene               scene;
+    private              TilePane            grid;
+    private              WritableImage       image;
+    private              long                layoutStart;
+    private              int                 frame;
+    private              double              buildTime;
+    private              long                heapBefore;
+    private              long                heapAfter;
+    private              long                allocatedBytes;
+    private              long                duration;
+
+
+    // ******************** Constructors **************************************
+    public StressHarness(final String controlName, final int count, final int frames) {
+        this.controlName = controlName;
+        this.count       = count;
+        this.frames      = frames;
+        this.layoutTimes = new double[frames];
+        this.renderTimes = new double[frames];
+        switch (controlName) {
+            case "NButton":
+                factory = () -> new NButton("Button");
+                toggle  = r -> { NButton b = (NButton) r; b.setText("Button".equals(b.getText()) ? "Pressed" : "Button"); };
+                break;
+            case "NToggleButton":
+                factory = () -> new NToggleButton("Toggle");
+                toggle  = r -> { NToggleButton b = (NToggleButton) r; b.setSelected(!b.isSelected()); };
+                break;
+            case "NCheckBox":
+                factory = () -> new NCheckBox("Check");
+                toggle  = r -> { NCheckBox c = (NCheckBox) r; c.setSelected(!c.isSelected()); };
+                break;
+            case "NSwitch":
+                factory = NSwitch::new;
+                toggle  = r -> { NSwitch s = (NSwitch) r; s.setOn(!s.isOn()); };
+                break;
+            case "NContainer":
+                factory = NContainer::new;
+                toggle  = r -> { NContainer c = (NContainer) r; c.setNStyle(NStyle.EMBOSSED == c.getNStyle() ? NStyle.SUNKEN : NStyle.EMBOSSED); };
+                break;
+            default: throw new IllegalArgumentException("Unknown control " + controlName);
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    public static void main(final String[] args) throws Exception {
+        List<String> controls = List.of("NButton", "NSwitch", "NContainer");
+        int[]        counts   = { 10_000, 50_000, 100_000 };
+        int          frames   = 60;
+        for (String arg : args) {
+            if (arg.startsWith("--controls=")) {
+                controls = Arrays.asList(arg.substring(11).split(","));
+            } else if (arg.startsWith("--counts=")) {
+                counts = Arrays.stream(arg.substring(9).split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--frames=")) {
+                frames = Integer.parseInt(arg.substring(9));
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        FxPlatform.startup();
+        try {
+            System.out.println(String.format(Locale.US, "%-14s %8s %10s %10s %10s %10s %10s %10s %8s %10s %12s",
+                                             "control", "count", "build ms", "layout ms", "layout p95", "render ms", "render p95", "max ms", ">16ms", "heap MB", "alloc MB/s"));
+            for (String control : controls) {
+                for (int count : counts) {
+                    final StressHarness harness = new StressHarness(control.trim(), count, frames);
+                    harness.run();
+                    System.out.println(harness.report());
+                }
+            }
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    public void run() throws InterruptedException {
+        System.gc();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        FxPlatform.runAndWait(this::build);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        FxPlatform.runAndWait(() -> {
+            final long threadId   = Thread.currentThread().getId();
+            final long start      = System.nanoTime();
+            final long startAlloc = allocatedBytes(threadId);
+            scene.addPreLayoutPulseListener(() -> layoutStart = System.nanoTime());
+            scene.addPostLayoutPulseListener(() -> {
+                if (frame >= frames) { return; }
+                layoutTimes[frame] = (System.nanoTime() - layoutStart) / 1_000_000.0;
+                final long renderStart = System.nanoTime();
+                scene.snapshot(image);
+                renderTimes[frame] = (System.nanoTime() - renderStart) / 1_000_000.0;
+                frame++;
+                if (frame == frames) {
+                    duration       = System.nanoTime() - start;
+                    allocatedBytes = allocatedBytes(threadId) - startAlloc;
+                    latch.countDown();
+                }
+            });
+            new AnimationTimer() {
+                @Override public void handle(final long now) {
+                    if (frame >= frames) { stop(); return; }
+                    if (frame % 2 == 0) {
+                        grid.getChildren().forEach(node -> toggle.accept((Region) node));
+                    } else {
+                        final boolean wide = grid.getPrefTileWidth() == CELL_WIDTH;
+                        grid.setPrefTileWidth(wide ? CELL_WIDTH * 1.25 : CELL_WIDTH);
+                    }
+                }
+            }.start();
+        });
+        if (!latch.await(30, TimeUnit.MINUTES)) { throw new IllegalStateException("Timeout while running " + controlName); }
+
+        heapAfter = memory.getHeapMemoryUsage().getUsed();
+        FxPlatform.runAndWait(() -> stage.close());
+    }
+
+    public String report() {
+        final double[] layout = layoutTimes.clone();
+        final double[] render = renderTimes.clone();
+        Arrays.sort(layout);
+        Arrays.sort(render);
+        double max  = 0;
+        int    over = 0;
+        for (int i = 0 ; i < frames ; i++) {
+            final double total = layoutTimes[i] + renderTimes[i];
+            max = Math.max(max, total);
+            if (total > FRAME_BUDGET) { over++; }
+        }
+        final double allocRate = duration > 0 ? (allocatedBytes / 1_048_576.0) / (duration / 1_000_000_000.0) : 0;
+        return String.format(Locale.US, "%-14s %8d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f %8d %10.1f %12.1f",
+                             controlName, count, buildTime, mean(layout), percentile(layout, 0.95), mean(render), percentile(render, 0.95), max, over,
+                             (heapAfter - heapBefore) / 1_048_576.0, allocRate);
+    }
+
+    private void build() {
+        final long start = System.nanoTime();
+        grid = new TilePane();
+        grid.setPrefTileWidth(CELL_WIDTH);
+        grid.setPrefTileHeight(CELL_HEIGHT);
+        grid.setPrefColumns((int) Math.ceil(Math.sqrt(count)));
+        for (int i = 0 ; i < count ; i++) {
+            final Region control = factory.get();
+            control.setPrefSize(CELL_WIDTH, CELL_HEIGHT);
+            grid.getChildren().add(control);
+        }
+        scene = new Scene(grid, WIDTH, HEIGHT);
+        image = new WritableImage((int) WIDTH, (int) HEIGHT);
+        stage = new Stage();
+        stage.setScene(scene);
+        stage.show();
+        grid.applyCss();
+        grid.layout();
+        buildTime = (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    private static long allocatedBytes(final long threadId) {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId);
+        }
+        return 0;
+    }
+
+    private static double mean(final double[] values) {
+        double sum = 0;
+        for (double value : values) { sum += value; }
+        return values.length == 0 ? 0 : sum / values.length;
+    }
+
+    private static double percentile(final double[] sortedValues, final double percentile) {
+        if (sortedValues.length == 0) { return 0; }
+        return sortedValues[Math.min(sortedValues.length - 1, (int) Math.ceil(percentile * sortedValues.length) - 1)];
+    }
+}
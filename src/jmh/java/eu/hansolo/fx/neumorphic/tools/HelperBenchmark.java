@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Stop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the color utilities of the Helper class and their allocation
+ * free counterparts. Run with -prof gc to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HelperBenchmark {
+    private List<Stop>     stops;
+    private GradientLookup gradientLookup;
+    private Color          color;
+    private int            argb;
+    private double         position;
+    private double[]       buffer;
+    private double[]       positions;
+    private int[]          colors;
+
+
+    @Setup public void setup() {
+        stops          = List.of(new Stop(0.0, Color.web("#236dee")), new Stop(0.25, Color.web("#00fff1")), new Stop(0.5, Color.web("#e2e6e8")),
+                                 new Stop(0.75, Color.web("#cc00c1")), new Stop(1.0, Color.web("#2e2f33")));
+        gradientLookup = new GradientLookup(stops);
+        color          = Color.web("#e2e6e8");
+        argb           = Helper.toArgb(color);
+        position       = 0.63;
+        buffer         = new double[3];
+        positions      = new double[1024];
+        colors         = new int[1024];
+        for (int i = 0 ; i < positions.length ; i++) { positions[i] = i / (double) positions.length; }
+    }
+
+
+    @Benchmark public Color derive() { return Helper.derive(color, 1.1); }
+
+    @Benchmark public int deriveArgb() { return Helper.deriveArgb(argb, 1.1); }
+
+    @Benchmark public boolean isBright() { return Helper.isBright(color); }
+
+    @Benchmark public boolean isBrightArgb() { return Helper.isBright(argb); }
+
+    @Benchmark public Color getColorAt() { return Helper.getColorAt(stops, position); }
+
+    @Benchmark public Color gradientLookupColorAt() { return gradientLookup.colorAt(position); }
+
+    @Benchmark public int[] gradientLookupFill() {
+        gradientLookup.fill(positions, colors);
+        return colors;
+    }
+
+    @Benchmark public Color interpolateColor() { return Helper.interpolateColor(stops.get(2), stops.get(3), position); }
+
+    @Benchmark public double[] rgbToHSL() { return Helper.rgbToHSL(color.getRed(), color.getGreen(), color.getBlue()); }
+
+    @Benchmark public double[] rgbToHSLBuffer() { return Helper.rgbToHSL(color.getRed(), color.getGreen(), color.getBlue(), buffer); }
+
+    @Benchmark public Color hslToRGB() { return Helper.hslToRGB(200, 0.1, 0.9); }
+
+    @Benchmark public double[] colorToYUV() { return Helper.colorToYUV(color); }
+
+    @Benchmark public double[] colorToYUVBuffer() { return Helper.colorToYUV(color, buffer); }
+
+    @Benchmark public void palette(final Blackhole blackhole) { blackhole.consume(NTheme.getPalette(color)); }
+}
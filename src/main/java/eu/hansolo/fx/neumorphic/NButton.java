@@ -16,8 +16,16 @@
 
  package eu.hansolo.fx.neumorphic;
 
+ import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
  import eu.hansolo.fx.neumorphic.tools.NShape;
  import eu.hansolo.fx.neumorphic.tools.Helper;
+ import eu.hansolo.fx.neumorphic.tools.NStyle;
+ import eu.hansolo.fx.neumorphic.tools.NTheme;
+ import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+ import eu.hansolo.fx.neumorphic.tools.StateAnimation;
+ import eu.hansolo.fx.neumorphic.tools.RenderEvents;
+ import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+ import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
  import javafx.beans.DefaultProperty;
  import javafx.beans.property.BooleanProperty;
  import javafx.beans.property.BooleanPropertyBase;
@@ -32,21 +40,16 @@
  import javafx.geometry.VPos;
  import javafx.scene.Node;
  import javafx.scene.canvas.Canvas;
- import javafx.scene.canvas.GraphicsContext;
  import javafx.scene.control.ContentDisplay;
  import javafx.scene.control.Control;
- import javafx.scene.effect.BlurType;
- import javafx.scene.effect.DropShadow;
- import javafx.scene.effect.InnerShadow;
  import javafx.scene.layout.Pane;
- import javafx.scene.layout.Region;
  import javafx.scene.paint.Color;
  import javafx.scene.text.Font;
  import javafx.scene.text.TextAlignment;
 
 
  @DefaultProperty("children")
- public class NButton extends Region {
+ public class NButton extends NControl<NButton> {
      private static final double                                    PREFERRED_WIDTH  = 100;
      private static final double                                    PREFERRED_HEIGHT = 24;
      private static final double                                    MINIMUM_WIDTH    = 10;
@@ -54,25 +57,16 @@
      private static final double                                    MAXIMUM_WIDTH    = 1024;
      private static final double                                    MAXIMUM_HEIGHT   = 1024;
      private static final double                                    OFFSET           = 0.5;
-     private              double                                    size;
-     private              double                                    width;
-     private              double                                    height;
      private              NShape                                    nShape;
      private              Node                                      graphics;
      private              Pane                                      pane;
-     private              Canvas                                    canvas;
-     private              GraphicsContext                           ctx;
      private              String                                    _text;
      private              StringProperty                            text;
-     private              Color                                     _backgroundColor;
-     private              ObjectProperty<Color>                     backgroundColor;
      private              Color                                     _textColor;
      private              ObjectProperty<Color>                     textColor;
      private              Font                                      _font;
      private              ObjectProperty<Font>                      font;
      private              Color                                     pressedColor;
-     private              Color                                     brightShadowColor;
-     private              Color                                     darkShadowColor;
      private              ContentDisplay                            contentDisplay;
      private              ObjectProperty<EventHandler<ActionEvent>> onAction;
      private              BooleanProperty                           armed;
@@ -80,10 +74,10 @@
      private              BooleanProperty                           hover;
      private              BooleanProperty                           hoverable;
      private              double                                    cornerRadius;
-     private              double                                    shadowRadius;
-     private              double                                    shadowOffset;
-     private              DropShadow                                outerShadow;
-     private              InnerShadow                               innerShadow;
+     private              Sprite                                    embossedSprite;
+     private              Sprite                                    sunkenSprite;
+     private              Sprite                                    flatSprite;
+     private              StateAnimation                            pressAnimation;
 
 
      // ******************** Constructors **************************************
@@ -94,13 +88,11 @@
          nShape            = NShape.RECTANGULAR;
          graphics          = null;
          _text             = text;
-         _backgroundColor  = Color.web("#e2e6e8");
-         _textColor        = Color.web("#6c737c");
+         _textColor        = NTheme.DEFAULT.getTextColor();
          _font             = Font.font(10);
-         pressedColor      = Helper.derive(_backgroundColor, Helper.isBright(_backgroundColor) ? 1.0125 : 1.05);
-         brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 1.1), 0.5);
-         darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 0.9), 0.5);
+         pressedColor      = NTheme.DEFAULT.getPalette().getPressedColor();
          contentDisplay    = ContentDisplay.LEFT;
+         pressAnimation    = new StateAnimation(this, this::requestRedraw);
          onAction          = new ObjectPropertyBase<>() {
              @Override protected void invalidated() { setEventHandler(ActionEvent.ACTION, get()); }
              @Override public Object getBean() { return NButton.this; }
@@ -113,33 +105,29 @@
          };
          pressed           = new BooleanPropertyBase(false) {
              @Override protected void invalidated() {
+                 RenderEvents.stateChanged(this);
                  setArmed(get());
                  if (!get()) { fire(); }
+                 pressAnimation.animateTo(get() ? 1 : 0);
                  layoutChildren();
              }
              @Override public Object getBean() { return NButton.this; }
              @Override public String getName() { return "pressed"; }
          };
          hover             = new BooleanPropertyBase(true) {
-             @Override protected void invalidated() { redraw(); }
+             @Override protected void invalidated() { requestRedraw(); }
              @Override public Object getBean() { return NButton.this; }
              @Override public String getName() { return "hover"; }
          };
          hoverable         = new BooleanPropertyBase(false) {
              @Override protected void invalidated() {
                  hover.set(get() ? false : true);
-                 redraw();
+                 requestRedraw();
              }
              @Override public Object getBean() { return NButton.this; }
              @Override public String getName() { return "hoverable"; }
          };
          cornerRadius      = 5;
-         shadowRadius      = 6;
-         shadowOffset      = 2;
-         outerShadow       = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-         outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-         innerShadow       = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-         innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
          initGraphics();
          registerListeners();
      }
@@ -167,8 +155,8 @@
      }
 
      private void registerListeners() {
-         widthProperty().addListener(o -> resize());
-         heightProperty().addListener(o -> resize());
+         widthProperty().addListener(o -> requestResize());
+         heightProperty().addListener(o -> requestResize());
          canvas.setOnMouseEntered(e -> { if (hoverable.get()) { hover.set(true); } });
          canvas.setOnMouseExited(e -> { if (hoverable.get()) { hover.set(false); } });
          canvas.setOnMousePressed(e -> pressed.set(true));
@@ -190,7 +178,7 @@
      public void setText(final String text) {
          if (null == this.text) {
              _text = text;
-             redraw();
+             requestRedraw();
          } else {
              this.text.set(text);
          }
@@ -198,7 +186,7 @@
      public StringProperty textProperty() {
          if (null == text) {
              text = new StringPropertyBase(_text) {
-                 @Override protected void invalidated() { redraw(); }
+                 @Override protected void invalidated() { requestRedraw(); }
                  @Override public Object getBean() { return NButton.this; }
                  @Override public String getName() { return "text"; }
              };
@@ -207,42 +195,16 @@
          return text;
      }
      
-     public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
-     public void setBackgroundColor(final Color backgroundColor) {
-         if (null == this.backgroundColor) {
-             boolean isBright  = Helper.isBright(backgroundColor);
-             _backgroundColor  = backgroundColor;
-             pressedColor      = Helper.derive(_backgroundColor, isBright ? 1.0125 : 1.05);
-             brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-             darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-             resize();
-         } else {
-             this.backgroundColor.set(backgroundColor);
-         }
-     }
-     public ObjectProperty<Color> backgroundColorProperty() {
-         if (null == backgroundColor) {
-             backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
-                 @Override protected void invalidated() {
-                     boolean isBright  = Helper.isBright(get());
-                     pressedColor      = Helper.derive(get(), isBright ? 1.0125 : 1.05);
-                     brightShadowColor = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-                     darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-                     resize();
-                 }
-                 @Override public Object getBean() { return NButton.this; }
-                 @Override public String getName() { return "backgroundColor"; }
-             };
-             _backgroundColor = null;
-         }
-         return backgroundColor;
+     @Override protected void applyTheme(final NTheme theme) {
+         super.applyTheme(theme);
+         setTextColor(theme.getTextColor());
      }
 
      public Color getTextColor() { return null == textColor ? _textColor : textColor.get(); }
      public void setTextColor(final Color textColor) {
          if (null == this.textColor) {
              _textColor = textColor;
-             redraw();
+             requestRedraw();
          } else {
              this.textColor.set(textColor);
          }
@@ -250,7 +212,7 @@
      public ObjectProperty<Color> textColorProperty() {
          if (null == textColor) {
              textColor = new ObjectPropertyBase<Color>(_textColor) {
-                 @Override protected void invalidated() { redraw(); }
+                 @Override protected void invalidated() { requestRedraw(); }
                  @Override public Object getBean() { return NButton.this; }
                  @Override public String getName() { return "textColor"; }
              };
@@ -263,7 +225,7 @@
      public void setFont(final Font font) {
          if (null == this.font) {
              _font = font;
-             redraw();
+             requestRedraw();
          } else {
              this.font.set(font);
          }
@@ -271,7 +233,7 @@
      public ObjectProperty<Font> fontProperty() {
          if (null == font) {
              font = new ObjectPropertyBase<Font>(_font) {
-                 @Override protected void invalidated() { redraw(); }
+                 @Override protected void invalidated() { requestRedraw(); }
                  @Override public Object getBean() { return NButton.this; }
                  @Override public String getName() { return "font"; }
              };
@@ -283,7 +245,7 @@
      public ContentDisplay getContentDisplay() { return contentDisplay; }
      public void setContentDisplay(final ContentDisplay contentDisplay) {
          this.contentDisplay = contentDisplay;
-         resize();
+         requestResize();
      }
 
      public boolean isHoverable() { return hoverable.get(); }
@@ -294,10 +256,10 @@
      public void setHovered(final boolean hovered) { this.hover.set(hovered); }
      public BooleanProperty hoveredProperty() { return hover; }
 
-     public NShape getNShape() { return nShape; }
+     @Override public NShape getNShape() { return nShape; }
      public void setNShape(final NShape nShape) {
          this.nShape = nShape;
-         resize();
+         requestResize();
      }
 
      public void setGraphics(final Node graphics) {
@@ -316,7 +278,7 @@
              getChildren().add(this.graphics);
              Helper.enableNode(this.graphics, true);
          }
-         resize();
+         requestResize();
      }
 
      public boolean isArmed() { return armed.get(); }
@@ -334,10 +296,10 @@
 
      // ******************** Layout ********************************************
      @Override public void layoutChildren() {
+         final long start = RenderMetrics.start(this);
          super.layoutChildren();
          if (null == this.graphics) {
-             redraw();
-             return;
+             requestRedraw();
          } else {
              double gW     = this.graphics.getLayoutBounds().getWidth();
              double gH     = this.graphics.getLayoutBounds().getHeight();
@@ -363,11 +325,17 @@
                      graphics.relocate((w - gW) * 0.5 + offset, (h - gH) * 0.5 + offset);
                      break;
              }
-             redraw();
+             requestRedraw();
          }
+         RenderMetrics.record(this, Phase.LAYOUT, start);
+     }
+
+     @Override protected void updateColors(final NTheme.Palette palette) {
+         super.updateColors(palette);
+         pressedColor = palette.getPressedColor();
      }
 
-     protected void resize() {
+     @Override protected void resize() {
          width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
          height = Helper.clamp(getFont().getSize() * 2, Double.MAX_VALUE, getHeight() - getInsets().getTop() - getInsets().getBottom());
          size   = width < height ? width : height;
@@ -382,8 +350,6 @@
 
                      canvas.setWidth(width);
                      canvas.setHeight(height);
-
-                     cornerRadius = Helper.clamp(1, 10, 0.1 * size);
                      break;
                  case PILL:
                      pane.setMinSize(width, height);
@@ -393,8 +359,6 @@
 
                      canvas.setWidth(width);
                      canvas.setHeight(height);
-
-                     cornerRadius = Helper.clamp(1, size, size / 1.25);
                      break;
                  case CIRCULAR:
                      pane.setMinSize(width, height);
@@ -404,58 +368,31 @@
 
                      canvas.setWidth(size);
                      canvas.setHeight(size);
-
-                     cornerRadius = size < 1 ? 1 : size;
                      break;
              }
 
-             shadowRadius = Helper.clamp(2, 6, 0.12 * size);
-             shadowOffset = Helper.clamp(2, 6, 0.04 * size);
+             cornerRadius = ControlGeometry.getCornerRadius(nShape, size);
+             deriveShadow();
 
-             outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-             outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-
-             innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-             innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+             embossedSprite = null;
+             sunkenSprite   = null;
+             flatSprite     = null;
 
              redraw();
          }
      }
 
-     protected void redraw() {
+     @Override protected void redraw() {
          ctx.clearRect(0, 0, width, height);
+         if (width <= 0 || height <= 0) { return; }
          boolean isHover        = hover.get();
-         boolean isPressed      = pressed.get();
+         double  pressValue     = pressAnimation.getValue();
          double  shadowRadiusX2 = 2 * shadowRadius;
-         ctx.save();
-         ctx.setEffect(isPressed ? innerShadow : isHover ? outerShadow : null);
-         ctx.setFill(isPressed ? pressedColor : getBackgroundColor());
-         switch (nShape) {
-             case RECTANGULAR:
-                 if (isPressed) {
-                     ctx.fillRoundRect(0, 0, width, height, cornerRadius, cornerRadius);
-                 } else {
-                     ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, cornerRadius, cornerRadius);
-                 }
-                 break;
-             case PILL       :
-                 if (isPressed) {
-                     ctx.fillRoundRect(0, 0, width, height, size, size);
-                 } else {
-                     ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, cornerRadius, cornerRadius);
-                 }
-                 break;
-             case CIRCULAR:
-                 if (isPressed) {
-                     ctx.fillOval(0, 0, size, size);
-                 } else {
-                     ctx.fillOval(shadowRadius, shadowRadius, size - shadowRadiusX2, size - shadowRadiusX2);
-                 }
-                 break;
-         }
-         ctx.restore();
+         // Cross fade between the cached sprites while the press is animated
+         if (pressValue < 1) { getSprite(false, isHover).draw(ctx, 0, 0, 1 - pressValue); }
+         if (pressValue > 0) { getSprite(true, isHover).draw(ctx, 0, 0, pressValue); }
          if (ContentDisplay.GRAPHIC_ONLY != contentDisplay) {
-             double offset = pressed.get() ? OFFSET : 0;
+             double offset = OFFSET * pressValue;
              ctx.setFill(getTextColor());
              ctx.setFont(getFont());
              switch (nShape) {
@@ -465,4 +402,23 @@
              }
          }
      }
+
+     private Sprite getSprite(final boolean isPressed, final boolean isHover) {
+         if (isPressed) {
+             if (null == sunkenSprite) { sunkenSprite = createSprite(true, pressedColor, NStyle.SUNKEN); }
+             return sunkenSprite;
+         } else if (isHover) {
+             if (null == embossedSprite) { embossedSprite = createSprite(false, getBackgroundColor(), NStyle.EMBOSSED); }
+             return embossedSprite;
+         } else {
+             if (null == flatSprite) { flatSprite = createSprite(false, getBackgroundColor(), null); }
+             return flatSprite;
+         }
+     }
+
+     private Sprite createSprite(final boolean pressed, final Color fill, final NStyle style) {
+         double w = NShape.CIRCULAR == nShape ? size : width;
+         double h = NShape.CIRCULAR == nShape ? size : height;
+         return createSprite(nShape, w, h, ControlGeometry.getSpriteInset(pressed, shadowRadius), ControlGeometry.getSpriteArc(nShape, pressed, size, cornerRadius), fill, style);
+     }
  }
@@ -16,7 +16,17 @@
 
 package eu.hansolo.fx.neumorphic;
 
+import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
 import eu.hansolo.fx.neumorphic.tools.Helper;
+import eu.hansolo.fx.neumorphic.tools.NShape;
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.NTheme;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Mark;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+import eu.hansolo.fx.neumorphic.tools.StateAnimation;
+import eu.hansolo.fx.neumorphic.tools.RenderEvents;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
 import javafx.beans.DefaultProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
@@ -29,20 +39,15 @@ import javafx.geometry.Pos;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Label;
-import javafx.scene.effect.BlurType;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.InnerShadow;
 import javafx.scene.layout.HBox;
-import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
 
 
 @DefaultProperty("children")
-public class NCheckBox extends Region {
+public class NCheckBox extends NControl<NCheckBox> {
     private static final double                      PREFERRED_WIDTH  = 120;
     private static final double                      PREFERRED_HEIGHT = 24;
     private static final double                      MINIMUM_WIDTH    = 10;
@@ -50,29 +55,20 @@ public class NCheckBox extends Region {
     private static final double                      MAXIMUM_WIDTH    = 1024;
     private static final double                      MAXIMUM_HEIGHT   = 1024;
     private static final double                      SPACER           = 5;
-    private              double                      size;
-    private              double                      width;
-    private              double                      height;
     private              HBox                        pane;
-    private              Canvas                      canvas;
-    private              GraphicsContext             ctx;
     private              Label                       label;
-    private              Color                       _backgroundColor;
-    private              ObjectProperty<Color>       backgroundColor;
     private              Color                       _textColor;
     private              ObjectProperty<Color>       textColor;
     private              Color                       _selectedColor;
     private              ObjectProperty<Color>       selectedColor;
-    private              Color                       brightShadowColor;
-    private              Color                       darkShadowColor;
     private              BooleanProperty             selected;
     private              double                      cornerRadius;
-    private              double                      shadowRadius;
-    private              double                      shadowOffset;
     private              double                      glowRadius;
-    private              DropShadow                  outerShadow;
-    private              InnerShadow                 innerShadow;
-    private              DropShadow                  glow;
+    private              Color                       glowColor;
+    private              Sprite                      embossedSprite;
+    private              Sprite                      sunkenSprite;
+    private              Sprite                      checkMarkSprite;
+    private              StateAnimation              selectAnimation;
 
 
     // ******************** Constructors **************************************
@@ -81,28 +77,21 @@ public class NCheckBox extends Region {
     }
     public NCheckBox(final String text) {
         label             = new Label(text);
-        _backgroundColor  = Color.web("#e2e6e8");
-        _textColor        = Color.web("#6c737c");
-        _selectedColor    = Color.web("#236dee");
-        brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 1.1), 0.5);
-        darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 0.9), 0.5);
+        _textColor        = NTheme.DEFAULT.getTextColor();
+        _selectedColor    = NTheme.DEFAULT.getSelectedColor();
+        selectAnimation   = new StateAnimation(this, this::requestRedraw);
         selected          = new BooleanPropertyBase(false) {
             @Override protected void invalidated() {
+                RenderEvents.stateChanged(this);
                 fireEvent(new ActionEvent(ActionEvent.ACTION, NCheckBox.this));
+                selectAnimation.animateTo(get() ? 1 : 0);
                 layoutChildren();
             }
             @Override public Object getBean() { return NCheckBox.this; }
             @Override public String getName() { return "selected"; }
         };
         cornerRadius      = 5;
-        shadowRadius      = 6;
-        shadowOffset      = 2;
         glowRadius        = 10;
-        outerShadow       = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-        glow              = new DropShadow(BlurType.TWO_PASS_BOX, _selectedColor, glowRadius, 0.5, 0, 0);
-        innerShadow       = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
         initGraphics();
         registerListeners();
     }
@@ -135,8 +124,8 @@ public class NCheckBox extends Region {
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
+        widthProperty().addListener(o -> requestResize());
+        heightProperty().addListener(o -> requestResize());
         canvas.setOnMousePressed(e -> selected.set(selected.get() ? false : true));
     }
 
@@ -155,33 +144,10 @@ public class NCheckBox extends Region {
     public void setText(final String text) { label.setText(text); }
     public StringProperty textProperty() { return label.textProperty(); }
 
-    public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
-    public void setBackgroundColor(final Color backgroundColor) {
-        if (null == this.backgroundColor) {
-            boolean isBright  = Helper.isBright(backgroundColor);
-            _backgroundColor  = backgroundColor;
-            brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-            darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-            resize();
-        } else {
-            this.backgroundColor.set(backgroundColor);
-        }
-    }
-    public ObjectProperty<Color> backgroundColorProperty() {
-        if (null == backgroundColor) {
-            backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
-                @Override protected void invalidated() {
-                    boolean isBright  = Helper.isBright(get());
-                    brightShadowColor = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-                    darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-                    resize();
-                }
-                @Override public Object getBean() { return NCheckBox.this; }
-                @Override public String getName() { return "backgroundColor"; }
-            };
-            _backgroundColor = null;
-        }
-        return backgroundColor;
+    @Override protected void applyTheme(final NTheme theme) {
+        super.applyTheme(theme);
+        setTextColor(theme.getTextColor());
+        setSelectedColor(theme.getSelectedColor());
     }
 
     public Color getTextColor() { return null == textColor ? _textColor : textColor.get(); }
@@ -189,7 +155,7 @@ public class NCheckBox extends Region {
         if (null == this.textColor) {
             _textColor = textColor;
             label.setTextFill(_textColor);
-            redraw();
+            requestRedraw();
         } else {
             this.textColor.set(textColor);
         }
@@ -199,7 +165,7 @@ public class NCheckBox extends Region {
             textColor = new ObjectPropertyBase<>(_textColor) {
                 @Override protected void invalidated() {
                     label.setTextFill(get());
-                    redraw();
+                    requestRedraw();
                 }
                 @Override public Object getBean() { return NCheckBox.this; }
                 @Override public String getName() { return "textColor"; }
@@ -213,7 +179,7 @@ public class NCheckBox extends Region {
     public void setSelectedColor(final Color selectedColor) {
         if (null == this.selectedColor) {
             _selectedColor = Helper.getColorWithOpacity(selectedColor, 0.6);
-            redraw();
+            requestResize();
         } else {
             this.selectedColor.set(selectedColor);
         }
@@ -223,7 +189,7 @@ public class NCheckBox extends Region {
             selectedColor = new ObjectPropertyBase<>(_selectedColor) {
                 @Override protected void invalidated() {
                     set(Helper.getColorWithOpacity(get(), 0.6));
-                    redraw();
+                    requestResize();
                 }
                 @Override public Object getBean() { return NCheckBox.this; }
                 @Override public String getName() { return "selectedColor"; }
@@ -244,11 +210,13 @@ public class NCheckBox extends Region {
 
     // ******************** Layout ********************************************
     @Override public void layoutChildren() {
+        final long start = RenderMetrics.start(this);
         super.layoutChildren();
-        resize();
+        requestResize();
+        RenderMetrics.record(this, Phase.LAYOUT, start);
     }
 
-    protected void resize() {
+    @Override protected void resize() {
         width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
         height = Helper.clamp(getFont().getSize() * 2, Double.MAX_VALUE, getHeight() - getInsets().getTop() - getInsets().getBottom());
         size   = width < height ? width : height;
@@ -263,55 +231,49 @@ public class NCheckBox extends Region {
             canvas.setWidth(size);
             canvas.setHeight(size);
 
-            cornerRadius = Helper.clamp(1, 10, 0.1 * size);
+            cornerRadius = ControlGeometry.getCornerRadius(NShape.RECTANGULAR, size);
 
-            shadowRadius = Helper.clamp(2, 6, 0.12 * size);
-            shadowOffset = Helper.clamp(2, 6, 0.04 * size);
+            deriveShadow();
 
-            outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            glowColor  = ControlGeometry.getGlowColor(getBackgroundColor(), getSelectedColor());
+            glowRadius = ControlGeometry.getGlowRadius(size);
 
-            innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-
-            Color glowColor = Helper.isBright(getBackgroundColor()) ? Helper.getColorWithOpacity(getSelectedColor(), 0.25) : getSelectedColor();
-            glowRadius = Helper.clamp(4, 8, size * 0.2);
-            glow = new DropShadow(BlurType.TWO_PASS_BOX, glowColor, glowRadius, 0.0, 0, 0);
+            embossedSprite  = null;
+            sunkenSprite    = null;
+            checkMarkSprite = null;
 
             redraw();
         }
     }
 
-    protected void redraw() {
+    @Override protected void redraw() {
         ctx.clearRect(0, 0, size, size);
-        boolean isSelected     = selected.get();
-        double  shadowRadiusX2 = 2 * shadowRadius;
-        ctx.save();
-        ctx.setEffect(isSelected ? innerShadow : outerShadow);
-        ctx.setFill(getBackgroundColor());
-        if (isSelected) {
-            ctx.fillRoundRect(0, 0, size, size, cornerRadius, cornerRadius);
-        } else {
-            ctx.fillRoundRect(shadowRadius, shadowRadius, size - shadowRadiusX2, size - shadowRadiusX2, cornerRadius, cornerRadius);
+        if (size <= 0) { return; }
+        double selectValue = selectAnimation.getValue();
+        // Cross fade between the cached sprites while a state change is animated
+        if (selectValue < 1) { getSprite(false).draw(ctx, 0, 0, 1 - selectValue); }
+        if (selectValue > 0) {
+            getSprite(true).draw(ctx, 0, 0, selectValue);
+
+            // The glowing check mark is a cached sprite so that animating the selection doesn't apply any effect
+            double checkMarkSize = size * 0.5;
+            if (null == checkMarkSprite) { checkMarkSprite = createMarkSprite(Mark.CHECK, checkMarkSize, getSelectedColor(), glowRadius, glowColor); }
+            double offset = (size - checkMarkSprite.getWidth()) * 0.5;
+            checkMarkSprite.draw(ctx, offset, offset, selectValue);
         }
-        ctx.restore();
+    }
+
+    private Sprite getSprite(final boolean isSelected) {
         if (isSelected) {
-            double checkMarkSize = size * 0.5;
-            double offset        = (size - checkMarkSize) * 0.5;
-            ctx.save();
-            ctx.setEffect(glow);
-            ctx.setFill(getSelectedColor());
-            ctx.beginPath();
-            ctx.moveTo(offset, offset + checkMarkSize * 0.5125);
-            ctx.lineTo(offset + checkMarkSize * 0.1541666666, offset + checkMarkSize * 0.3583333);
-            ctx.lineTo(offset + checkMarkSize * 0.375, offset + checkMarkSize * 0.56666666);
-            ctx.lineTo(offset + checkMarkSize * 0.845833333, offset + checkMarkSize * 0.0833333333);
-            ctx.lineTo(offset + checkMarkSize, offset + checkMarkSize * 0.2375);
-            ctx.lineTo(offset + checkMarkSize * 0.375, offset + checkMarkSize * 0.875);
-            ctx.lineTo(offset, offset + checkMarkSize * 0.5125);
-            ctx.closePath();
-            ctx.fill();
-            ctx.restore();
+            if (null == sunkenSprite) { sunkenSprite = createSprite(0, NStyle.SUNKEN); }
+            return sunkenSprite;
+        } else {
+            if (null == embossedSprite) { embossedSprite = createSprite(shadowRadius, NStyle.EMBOSSED); }
+            return embossedSprite;
         }
     }
+
+    private Sprite createSprite(final double inset, final NStyle style) {
+        return createSprite(NShape.RECTANGULAR, size, size, inset, cornerRadius, getBackgroundColor(), style);
+    }
 }
@@ -16,93 +16,129 @@
 
 package eu.hansolo.fx.neumorphic;
 
+import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
 import eu.hansolo.fx.neumorphic.tools.Helper;
 import eu.hansolo.fx.neumorphic.tools.NShape;
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.NTheme;
+import eu.hansolo.fx.neumorphic.tools.SearchIndex;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.beans.DefaultProperty;
-import javafx.beans.binding.Bindings;
-import javafx.beans.binding.BooleanBinding;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ObjectPropertyBase;
+import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+import javafx.geometry.Insets;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.ContentDisplay;
-import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Skin;
+import javafx.scene.control.TextField;
 import javafx.scene.effect.BlurType;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.InnerShadow;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.Pane;
-import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
+import javafx.stage.Popup;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @DefaultProperty("children")
-public class NChoiceBox<T> extends Region {
+public class NChoiceBox<T> extends NControl<NChoiceBox<T>> {
     private static final double                PREFERRED_WIDTH  = 120;
     private static final double                PREFERRED_HEIGHT = 24;
     private static final double                MINIMUM_WIDTH    = 10;
     private static final double                MINIMUM_HEIGHT   = 10;
     private static final double                MAXIMUM_WIDTH    = 1024;
     private static final double                MAXIMUM_HEIGHT   = 1024;
+    private static final int                   VISIBLE_ROWS     = 10;
     private static       String                userAgentStyleSheet;
-    private              double                size;
-    private              double                width;
-    private              double                height;
     private              NShape                nShape;
     private              double                choiceBoxWidth;
     private              double                choiceBoxHeight;
     private              ChoiceBox<T>          choiceBox;
     private              Pane                  pane;
-    private              Canvas                canvas;
-    private              GraphicsContext       ctx;
-    private              Label                 label;
     private              List<T>               items;
-    private              Color                 _backgroundColor;
-    private              ObjectProperty<Color> backgroundColor;
     private              Color                 _textColor;
     private              ObjectProperty<Color> textColor;
     private              Color                 _selectedColor;
     private              ObjectProperty<Color> selectedColor;
-    private              Color                 brightShadowColor;
-    private              Color                 darkShadowColor;
+    private              ObjectProperty<Font>  font;
+    private              NChoiceBoxSkin<T>     skin;
     private              ContentDisplay        contentDisplay;
     private              double                cornerRadius;
-    private              double                shadowRadius;
-    private              double                shadowOffset;
-    private              DropShadow            outerShadow;
-    private              InnerShadow           innerShadow;
-    private              BooleanBinding        showing;
+    private              Sprite                sprite;
+    private              boolean               virtualized;
+    private              Popup                 popup;
+    private              VBox                  popupPane;
+    private              DropShadow            popupShadow;
+    private              TextField             filterField;
+    private              ListView<T>           listView;
+    private              ObservableList<T>     filteredItems;
+    private              SearchIndex<T>        searchIndex;
+    private              CompletableFuture<List<T>> search;
+    private              PauseTransition       refresh;
+    private              NItemProvider<T>      itemProvider;
+    private              Executor              executor;
+    private              int                   nextPage;
+    private              boolean               loading;
+    private              boolean               loadAllRequested;
+    private              boolean               exhausted;
+    private              ObjectProperty<Exception> loadError;
+    private        final AtomicInteger         loadGeneration = new AtomicInteger();
+    private        final AtomicBoolean         flushScheduled = new AtomicBoolean();
+    private        final ConcurrentLinkedQueue<Page<T>> loadedPages = new ConcurrentLinkedQueue<>();
 
 
     // ******************** Constructors **************************************
     public NChoiceBox() {
         this(new ArrayList<>());
     }
+    public NChoiceBox(final NItemProvider<T> itemProvider) {
+        this(new ArrayList<>());
+        setItemProvider(itemProvider);
+    }
     public NChoiceBox(final List<T> items) {
         nShape               = NShape.PILL;
         this.items           = items;
-        _backgroundColor     = Color.web("#e2e6e8");
-        _textColor           = Color.web("#6c737c");
-        _selectedColor       = Color.web("#236dee");
-        brightShadowColor    = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 1.1), 0.5);
-        darkShadowColor      = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 0.9), 0.5);
+        executor             = SearchIndex.getDefaultExecutor();
+        _textColor           = NTheme.DEFAULT.getTextColor();
+        _selectedColor       = NTheme.DEFAULT.getSelectedColor();
         contentDisplay       = ContentDisplay.LEFT;
         cornerRadius         = 5;
-        shadowRadius         = 6;
-        shadowOffset         = 2;
-        outerShadow          = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-        innerShadow          = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+        loadError            = new ObjectPropertyBase<>() {
+            @Override public Object getBean() { return NChoiceBox.this; }
+            @Override public String getName() { return "loadError"; }
+        };
         initGraphics();
         registerListeners();
     }
@@ -124,7 +160,17 @@ public class NChoiceBox<T> extends Region {
         ctx.setTextAlign(TextAlignment.CENTER);
         ctx.setTextBaseline(VPos.CENTER);
 
-        choiceBox = new ChoiceBox(FXCollections.observableList(items));
+        font = new ObjectPropertyBase<>(Font.getDefault()) {
+            @Override public Object getBean() { return NChoiceBox.this; }
+            @Override public String getName() { return "font"; }
+        };
+
+        choiceBox = new ChoiceBox<>(FXCollections.observableList(items)) {
+            @Override protected Skin<?> createDefaultSkin() {
+                skin = new NChoiceBoxSkin<>(this, NChoiceBox.this);
+                return skin;
+            }
+        };
 
         pane = new Pane(canvas, choiceBox);
 
@@ -132,41 +178,74 @@ public class NChoiceBox<T> extends Region {
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
-        if (null != getScene()) {
-            setupBinding();
-        } else {
-            sceneProperty().addListener((o1, ov1, nv1) -> {
-                if (null == nv1) { return; }
-                if (null != getScene().getWindow()) {
-                    setupBinding();
-                } else {
-                    sceneProperty().get().windowProperty().addListener((o2, ov2, nv2) -> {
-                        if (null == nv2) { return; }
-                        setupBinding();
-                    });
-                }
-            });
-        }
+        widthProperty().addListener(o -> requestResize());
+        heightProperty().addListener(o -> requestResize());
+        choiceBox.showingProperty().addListener((o, ov, nv) -> {
+            if (virtualized && nv) {
+                choiceBox.hide();
+                showPopup();
+            } else if (nv) {
+                loadPages(true);
+            }
+        });
     }
 
-    private void setupBinding() {
-        showing = Bindings.createBooleanBinding(() -> {
-            if (getScene() != null && getScene().getWindow() != null) {
-                return getScene().getWindow().isShowing();
-            } else {
-                return false;
+    private void initPopup() {
+        filteredItems = FXCollections.observableArrayList();
+        refresh       = new PauseTransition(Duration.millis(100));
+        refresh.setOnFinished(e -> { if (popup.isShowing()) { filter(filterField.getText()); } });
+
+        filterField = new TextField();
+        filterField.setPromptText("Filter");
+
+        listView = new ListView<>(filteredItems);
+        listView.setCellFactory(lv -> new ListCell<>() {
+            @Override protected void updateItem(final T item, final boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || null == item ? null : toText(item));
+                if (!empty && getIndex() >= filteredItems.size() - VISIBLE_ROWS) { loadPages(false); }
             }
-        }, sceneProperty(), getScene().windowProperty(), getScene().getWindow().showingProperty());
+        });
 
-        showing.addListener(o -> {
-            if (showing.get()) {
-                label = (Label) choiceBox.lookup(".label");
-                label.setTextFill(getTextColor());
-                label.setFont(getFont());
+        // The popup is a node, so its shadow is an instance of its own and not shared by the EffectCache
+        popupShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
+        popupShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+
+        popupPane = new VBox(5, filterField, listView);
+        popupPane.setPadding(new Insets(5));
+        popupPane.setEffect(popupShadow);
+
+        popup = new Popup();
+        popup.setAutoHide(true);
+        popup.setHideOnEscape(true);
+        popup.getContent().setAll(popupPane);
+
+        filterField.textProperty().addListener(o -> filter(filterField.getText()));
+        filterField.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (KeyCode.DOWN == e.getCode() && !filteredItems.isEmpty()) {
+                listView.requestFocus();
+                listView.getSelectionModel().selectFirst();
+                e.consume();
+            } else if (KeyCode.ENTER == e.getCode() && !filteredItems.isEmpty()) {
+                select(filteredItems.get(0));
+                e.consume();
+            }
+        });
+        listView.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (KeyCode.ENTER == e.getCode() && null != listView.getSelectionModel().getSelectedItem()) {
+                select(listView.getSelectionModel().getSelectedItem());
+                e.consume();
+            }
+        });
+        listView.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            if (MouseButton.PRIMARY == e.getButton() && null != listView.getSelectionModel().getSelectedItem()) {
+                select(listView.getSelectionModel().getSelectedItem());
             }
         });
+        popup.setOnHidden(e -> {
+            refresh.stop();
+            if (null != search) { search.cancel(false); }
+        });
     }
 
 
@@ -180,41 +259,18 @@ public class NChoiceBox<T> extends Region {
 
     @Override public ObservableList<Node> getChildren() { return super.getChildren(); }
 
-    public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
-    public void setBackgroundColor(final Color backgroundColor) {
-        if (null == this.backgroundColor) {
-            boolean isBright     = Helper.isBright(backgroundColor);
-            _backgroundColor     = backgroundColor;
-            brightShadowColor    = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-            darkShadowColor      = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-            resize();
-        } else {
-            this.backgroundColor.set(backgroundColor);
-        }
-    }
-    public ObjectProperty<Color> backgroundColorProperty() {
-        if (null == backgroundColor) {
-            backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
-                @Override protected void invalidated() {
-                    boolean isBright     = Helper.isBright(get());
-                    brightShadowColor    = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-                    darkShadowColor      = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-                    resize();
-                }
-                @Override public Object getBean() { return NChoiceBox.this; }
-                @Override public String getName() { return "backgroundColor"; }
-            };
-            _backgroundColor = null;
-        }
-        return backgroundColor;
+    @Override protected void applyTheme(final NTheme theme) {
+        super.applyTheme(theme);
+        setTextColor(theme.getTextColor());
+        setSelectedColor(theme.getSelectedColor());
     }
 
     public Color getTextColor() { return null == textColor ? _textColor : textColor.get(); }
     public void setTextColor(final Color textColor) {
         if (null == this.textColor) {
             _textColor = textColor;
-            if (null != label) { label.setTextFill(_textColor); }
-            redraw();
+            if (null != skin) { skin.updateTextColor(); }
+            requestRedraw();
         } else {
             this.textColor.set(textColor);
         }
@@ -223,8 +279,8 @@ public class NChoiceBox<T> extends Region {
         if (null == textColor) {
             textColor = new ObjectPropertyBase<>(_textColor) {
                 @Override protected void invalidated() {
-                    choiceBox.setStyle("-fx-text-inner-color: " + Helper.colorToCss(get()));
-                    redraw();
+                    if (null != skin) { skin.updateTextColor(); }
+                    requestRedraw();
                 }
                 @Override public Object getBean() { return NChoiceBox.this; }
                 @Override public String getName() { return "textColor"; }
@@ -238,8 +294,7 @@ public class NChoiceBox<T> extends Region {
     public void setSelectedColor(final Color selectedColor) {
         if (null == this.selectedColor) {
             _selectedColor = selectedColor;
-            choiceBox.setStyle("-fx-highlight-fill: " + Helper.colorToCss(_selectedColor));
-            redraw();
+            requestRedraw();
         } else {
             this.selectedColor.set(selectedColor);
         }
@@ -248,8 +303,7 @@ public class NChoiceBox<T> extends Region {
         if (null == selectedColor) {
             selectedColor = new ObjectPropertyBase<>(_selectedColor) {
                 @Override protected void invalidated() {
-                    choiceBox.setStyle("-fx-highlight-fill: " + Helper.colorToCss(get()));
-                    redraw();
+                    requestRedraw();
                 }
                 @Override public Object getBean() { return NChoiceBox.this; }
                 @Override public String getName() { return "selectedColor"; }
@@ -259,22 +313,256 @@ public class NChoiceBox<T> extends Region {
         return selectedColor;
     }
 
-    public Font getFont() { return label.getFont(); }
-    public void setFont(final Font font) { label.setFont(font); }
-    public ObjectProperty<Font> fontProperty() { return label.fontProperty(); }
+    public Font getFont() { return font.get(); }
+    public void setFont(final Font font) { this.font.set(font); }
+    public ObjectProperty<Font> fontProperty() { return font; }
 
     public ContentDisplay getContentDisplay() { return contentDisplay; }
     public void setContentDisplay(final ContentDisplay contentDisplay) {
         this.contentDisplay = contentDisplay;
-        resize();
+        requestResize();
     }
 
     public ChoiceBox<T> getChoiceBox() { return choiceBox; }
 
-    public NShape getNShape() { return nShape; }
+    public List<T> getItems() { return items; }
+    public void setItems(final List<T> items) {
+        itemProvider = null;
+        resetLoading();
+        applyItems(null == items ? new ArrayList<>() : items);
+    }
+
+    public NItemProvider<T> getItemProvider() { return itemProvider; }
+    /**
+     * Replaces the items with the items of the given provider. The first page
+     * will be loaded in the background right away, all further pages will be
+     * loaded when they are needed, e.g. when the ChoiceBox is opened or when
+     * the end of the list is visible in virtualized mode. A filter only
+     * searches the loaded items, further pages are loaded while the end of
+     * the filtered list is visible.
+     * Loaded pages will be added to the items in batches on the FX application thread.
+     * @param itemProvider the provider that loads the items page by page
+     */
+    public void setItemProvider(final NItemProvider<T> itemProvider) {
+        this.itemProvider = itemProvider;
+        resetLoading();
+        applyItems(new ArrayList<>());
+        loadPages(false);
+    }
+
+    /**
+     * @return the exception of the last page that could not be loaded by the
+     * item provider or null, errors are wrapped in an ExecutionException. The
+     * page will be loaded again the next time more items are needed, the
+     * error is cleared once a page was loaded.
+     */
+    public Exception getLoadError() { return loadError.get(); }
+    private void setLoadError(final Exception loadError) { this.loadError.set(loadError); }
+    public ReadOnlyObjectProperty<Exception> loadErrorProperty() { return loadError; }
+
+    public Executor getExecutor() { return executor; }
+    /**
+     * Defines the executor that is used to load the pages of the item provider
+     * and to build the search index in virtualized mode.
+     * @param executor the executor, null will use a shared pool of daemon threads
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = null == executor ? SearchIndex.getDefaultExecutor() : executor;
+        if (virtualized) {
+            searchIndex.cancel();
+            searchIndex = new SearchIndex<>(this::toText, this.executor);
+            searchIndex.setItems(items);
+        }
+    }
+
+    public boolean isLoading() { return loading; }
+
+    private void applyItems(final List<T> items) {
+        this.items = items;
+        if (virtualized) {
+            searchIndex.setItems(this.items);
+            if (null != popup && popup.isShowing()) { filter(filterField.getText()); }
+        } else {
+            choiceBox.setItems(FXCollections.observableList(this.items));
+        }
+    }
+
+    public T getValue() { return choiceBox.getValue(); }
+    public void setValue(final T value) { choiceBox.setValue(value); }
+    public ObjectProperty<T> valueProperty() { return choiceBox.valueProperty(); }
+
+    /**
+     * In virtualized mode the ChoiceBox will not create a menu item per entry.
+     * Instead a popup with a filter field and a cell recycling list is shown,
+     * the filtering is done on a search index that is built in the background.
+     * Use this mode for lists with many thousand items.
+     * @return true if the virtualized mode is active
+     */
+    public boolean isVirtualized() { return virtualized; }
+    public void setVirtualized(final boolean virtualized) {
+        if (this.virtualized == virtualized) { return; }
+        this.virtualized = virtualized;
+        T value = choiceBox.getValue();
+        if (virtualized) {
+            if (null == popup) { initPopup(); }
+            searchIndex = new SearchIndex<>(this::toText, executor);
+            searchIndex.setItems(items);
+            choiceBox.setItems(FXCollections.observableArrayList());
+        } else {
+            if (null != popup) { popup.hide(); }
+            searchIndex.cancel();
+            searchIndex = null;
+            filteredItems.clear();
+            choiceBox.setItems(FXCollections.observableList(items));
+        }
+        choiceBox.setValue(value);
+    }
+
+    public void showPopup() {
+        if (!virtualized || null == getScene() || null == getScene().getWindow()) { return; }
+        Bounds bounds = localToScreen(getLayoutBounds());
+        popupPane.setBackground(new Background(new BackgroundFill(getBackgroundColor(), new CornerRadii(cornerRadius), Insets.EMPTY)));
+        updatePopupShadow();
+        popupPane.setPrefWidth(bounds.getWidth());
+        listView.setPrefHeight(VISIBLE_ROWS * Math.max(choiceBoxHeight, 24));
+        filterField.clear();
+        filter("");
+        popup.show(this, bounds.getMinX(), bounds.getMaxY() + shadowOffset);
+        filterField.requestFocus();
+    }
+
+    public void hidePopup() {
+        if (null != popup) { popup.hide(); }
+    }
+
+    private void updatePopupShadow() {
+        final DropShadow darkShadow = (DropShadow) popupShadow.getInput();
+        popupShadow.setColor(brightShadowColor);
+        popupShadow.setRadius(shadowRadius);
+        popupShadow.setOffsetX(-shadowOffset);
+        popupShadow.setOffsetY(-shadowOffset);
+        darkShadow.setColor(darkShadowColor);
+        darkShadow.setRadius(shadowRadius);
+        darkShadow.setOffsetX(shadowOffset);
+        darkShadow.setOffsetY(shadowOffset);
+    }
+
+    @Override public NShape getNShape() { return nShape; }
     public void setNShape(final NShape nShape) {
         this.nShape = nShape;
-        resize();
+        requestResize();
+    }
+
+    private void select(final T item) {
+        choiceBox.setValue(item);
+        popup.hide();
+    }
+
+    private void filter(final String text) {
+        if (null != search) { search.cancel(false); }
+        final CompletableFuture<List<T>> future = searchIndex.search(text);
+        search = future;
+        future.thenAccept(matches -> Platform.runLater(() -> {
+            if (future != search || !virtualized) { return; }
+            filteredItems.setAll(matches);
+            // Only the loaded items are filtered, the next page is loaded while the end of the list is visible
+            if (matches.size() < VISIBLE_ROWS) { loadPages(false); }
+            // Search again while the index is still being built in the background
+            if (!searchIndex.isComplete()) { refresh.playFromStart(); }
+        }));
+    }
+
+    private void resetLoading() {
+        loadGeneration.incrementAndGet();
+        loadedPages.clear();
+        nextPage         = 0;
+        loading          = false;
+        loadAllRequested = false;
+        exhausted        = false;
+        setLoadError(null);
+    }
+
+    private void loadPages(final boolean all) {
+        if (null == itemProvider || exhausted) { return; }
+        if (loading) {
+            loadAllRequested |= all;
+            return;
+        }
+        loading = true;
+        final NItemProvider<T> provider   = itemProvider;
+        final int              generation = loadGeneration.get();
+        final int              firstPage  = nextPage;
+        final int              pageSize   = Math.max(1, provider.getPageSize());
+        executor.execute(() -> {
+            int     pageIndex = firstPage;
+            boolean last;
+            try {
+                do {
+                    List<T> page = provider.loadPage(pageIndex, pageSize);
+                    if (null == page) { page = List.of(); }
+                    last = page.size() < pageSize;
+                    pageIndex++;
+                    publish(new Page<>(generation, page, pageIndex, last, last || !all, null));
+                } while (all && !last && generation == loadGeneration.get());
+            } catch (Exception e) {
+                publish(new Page<>(generation, List.of(), pageIndex, false, true, e));
+            } catch (Throwable t) {
+                // Errors are passed on to the executor, the page is published so that loading doesn't stay active
+                publish(new Page<>(generation, List.of(), pageIndex, false, true, new ExecutionException(t)));
+                throw t;
+            }
+        });
+    }
+
+    private void publish(final Page<T> page) {
+        loadedPages.add(page);
+        // Pages that arrive before the FX application thread flushes are added in one batch
+        if (flushScheduled.compareAndSet(false, true)) { Platform.runLater(this::flushPages); }
+    }
+
+    private void flushPages() {
+        flushScheduled.set(false);
+        final List<T> batch  = new ArrayList<>();
+        Exception     error  = null;
+        boolean       loaded = false;
+        Page<T>       page;
+        while (null != (page = loadedPages.poll())) {
+            if (page.generation != loadGeneration.get()) { continue; }
+            batch.addAll(page.items);
+            nextPage  = page.nextPage;
+            exhausted = page.last;
+            if (page.done) { loading = false; }
+            if (null == page.error) {
+                loaded = true;
+            } else {
+                error = page.error;
+            }
+        }
+        if (!batch.isEmpty()) {
+            if (virtualized) {
+                items.addAll(batch);
+                searchIndex.addItems(batch);
+                if (null != popup && popup.isShowing()) { filter(filterField.getText()); }
+            } else {
+                choiceBox.getItems().addAll(batch);
+            }
+        }
+        if (null != error) {
+            // The failed page will be loaded again when more items are needed
+            loadAllRequested = false;
+            setLoadError(error);
+            return;
+        }
+        if (loaded) { setLoadError(null); }
+        if (!loading && loadAllRequested) {
+            loadAllRequested = false;
+            loadPages(true);
+        }
+    }
+
+    private String toText(final T item) {
+        StringConverter<T> converter = choiceBox.getConverter();
+        return null == converter ? String.valueOf(item) : converter.toString(item);
     }
 
     @Override public String getUserAgentStylesheet() {
@@ -285,6 +573,7 @@ public class NChoiceBox<T> extends Region {
 
     // ******************** Layout ********************************************
     @Override public void layoutChildren() {
+        final long start = RenderMetrics.start(this);
         super.layoutChildren();
 
         choiceBoxWidth  = choiceBox.getLayoutBounds().getWidth();
@@ -292,10 +581,11 @@ public class NChoiceBox<T> extends Region {
         double w  = width;
         double h  = height;
         choiceBox.relocate((w - choiceBoxWidth) * 0.5, (h - choiceBoxHeight) * 0.5);
-        resize();
+        requestResize();
+        RenderMetrics.record(this, Phase.LAYOUT, start);
     }
 
-    protected void resize() {
+    @Override protected void resize() {
         width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
         height = Helper.clamp(choiceBox.getHeight(), Double.MAX_VALUE, getHeight() - getInsets().getTop() - getInsets().getBottom());
         size   = width < height ? width : height;
@@ -313,34 +603,49 @@ public class NChoiceBox<T> extends Region {
 
             switch(nShape) {
                 case RECTANGULAR:
-                    cornerRadius = Helper.clamp(1, 10, 0.1 * size);
+                    cornerRadius = ControlGeometry.getCornerRadius(NShape.RECTANGULAR, size);
                     break;
                 case PILL:
                 default:
-                    cornerRadius = Helper.clamp(1, size, size / 1.25);
+                    cornerRadius = ControlGeometry.getCornerRadius(NShape.PILL, size);
                     break;
             }
 
-            shadowRadius = Helper.clamp(2, 6, 0.12 * size);
-            shadowOffset = Helper.clamp(2, 6, 0.04 * size);
-
-            outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            deriveShadow();
 
-            innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            sprite = null;
 
             redraw();
         }
     }
 
-    protected void redraw() {
+    @Override protected void redraw() {
         ctx.clearRect(0, 0, width, height);
-        double  shadowRadiusX2 = 2 * shadowRadius;
-        ctx.save();
-        ctx.setEffect(outerShadow);
-        ctx.setFill(getBackgroundColor());
-        ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, cornerRadius, cornerRadius);
-        ctx.restore();
+        if (width <= 0 || height <= 0) { return; }
+        if (null == sprite) {
+            sprite = createSprite(nShape, width, height, shadowRadius, cornerRadius, getBackgroundColor(), NStyle.EMBOSSED);
+        }
+        sprite.draw(ctx, 0, 0);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class Page<T> {
+        private final int       generation;
+        private final List<T>   items;
+        private final int       nextPage;
+        private final boolean   last;
+        private final boolean   done;
+        private final Exception error;
+
+
+        Page(final int generation, final List<T> items, final int nextPage, final boolean last, final boolean done, final Exception error) {
+            this.generation = generation;
+            this.items      = items;
+            this.nextPage   = nextPage;
+            this.last       = last;
+            this.done       = done;
+            this.error      = error;
+        }
     }
 }
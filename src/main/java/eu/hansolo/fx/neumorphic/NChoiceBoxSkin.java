@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import javafx.scene.Node;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.skin.ChoiceBoxSkin;
+
+
+/**
+ * Skin of the ChoiceBox inside a NChoiceBox that keeps a direct reference to
+ * the label of the ChoiceBox, so the text color and font of the NChoiceBox
+ * can be applied without looking up the label in the scene graph.
+ */
+class NChoiceBoxSkin<T> extends ChoiceBoxSkin<T> {
+    private final NChoiceBox<T> nChoiceBox;
+    private       Label         label;
+
+
+    // ******************** Constructors **************************************
+    NChoiceBoxSkin(final ChoiceBox<T> choiceBox, final NChoiceBox<T> nChoiceBox) {
+        super(choiceBox);
+        this.nChoiceBox = nChoiceBox;
+        // ChoiceBoxSkin adds its label and the open button once in its constructor
+        for (Node node : getChildren()) {
+            if (node instanceof Label) {
+                label = (Label) node;
+                break;
+            }
+        }
+        if (null != label) { label.fontProperty().bind(nChoiceBox.fontProperty()); }
+        updateTextColor();
+    }
+
+
+    // ******************** Methods *******************************************
+    Label getLabel() { return label; }
+
+    void updateTextColor() {
+        if (null == label) { return; }
+        label.setTextFill(nChoiceBox.getTextColor());
+    }
+
+    @Override public void dispose() {
+        if (null != label) { label.fontProperty().unbind(); }
+        super.dispose();
+    }
+}
@@ -19,6 +19,9 @@ package eu.hansolo.fx.neumorphic;
 import eu.hansolo.fx.neumorphic.tools.Helper;
 import eu.hansolo.fx.neumorphic.tools.NShape;
 import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
 import javafx.beans.DefaultProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ObjectPropertyBase;
@@ -27,15 +30,10 @@ import javafx.geometry.Insets;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.effect.BlurType;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.InnerShadow;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.Pane;
-import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
@@ -43,34 +41,23 @@ import javafx.scene.text.TextAlignment;
 
 
 @DefaultProperty("children")
-public class NContainer extends Region {
+public class NContainer extends NControl<NContainer> {
     private static final double                                    PREFERRED_WIDTH  = 100;
     private static final double                                    PREFERRED_HEIGHT = 100;
     private static final double                                    MINIMUM_WIDTH    = 10;
     private static final double                                    MINIMUM_HEIGHT   = 10;
     private static final double                                    MAXIMUM_WIDTH    = 2048;
     private static final double                                    MAXIMUM_HEIGHT   = 2048;
-    private              double                                    size;
-    private              double                                    width;
-    private              double                                    height;
     private              NShape                                    nShape;
     private              StackPane                                 container;
     private              Rectangle                                 clip;
     private              Pane                                      pane;
-    private              Canvas                                    canvas;
-    private              GraphicsContext                           ctx;
-    private              Color                                     _backgroundColor;
-    private              ObjectProperty<Color>                     backgroundColor;
-    private              Color                                     brightShadowColor;
-    private              Color                                     darkShadowColor;
     private              NStyle                                    _style;
     private              ObjectProperty<NStyle>                    style;
     private              double                                    cornerRadius;
-    private              double                                    shadowRadius;
     private              double                                    shadowRadiusX2;
-    private              double                                    shadowOffset;
-    private              DropShadow                                outerShadow;
-    private              InnerShadow                               innerShadow;
+    private              Sprite                                    embossedSprite;
+    private              Sprite                                    sunkenSprite;
 
 
     // ******************** Constructors **************************************
@@ -79,18 +66,9 @@ public class NContainer extends Region {
     }
     public NContainer(final String text) {
         nShape            = NShape.RECTANGULAR;
-        _backgroundColor  = Color.web("#e2e6e8");
-        brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 1.1), 0.5);
-        darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 0.9), 0.5);
         _style            = NStyle.EMBOSSED;
         cornerRadius      = 5;
-        shadowRadius      = 6;
         shadowRadiusX2    = 12;
-        shadowOffset      = 2;
-        outerShadow       = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-        innerShadow       = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
         initGraphics();
         registerListeners();
     }
@@ -124,8 +102,8 @@ public class NContainer extends Region {
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
+        widthProperty().addListener(o -> requestResize());
+        heightProperty().addListener(o -> requestResize());
     }
 
 
@@ -139,40 +117,11 @@ public class NContainer extends Region {
 
     public ObservableList<Node> getNChildren() { return container.getChildren(); }
 
-    public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
-    public void setBackgroundColor(final Color backgroundColor) {
-        if (null == this.backgroundColor) {
-            boolean isBright  = Helper.isBright(backgroundColor);
-            _backgroundColor  = backgroundColor;
-            brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-            darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-            resize();
-        } else {
-            this.backgroundColor.set(backgroundColor);
-        }
-    }
-    public ObjectProperty<Color> backgroundColorProperty() {
-        if (null == backgroundColor) {
-            backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
-                @Override protected void invalidated() {
-                    boolean isBright  = Helper.isBright(get());
-                    brightShadowColor = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-                    darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-                    resize();
-                }
-                @Override public Object getBean() { return NContainer.this; }
-                @Override public String getName() { return "backgroundColor"; }
-            };
-            _backgroundColor = null;
-        }
-        return backgroundColor;
-    }
-
     public NStyle getNStyle() { return null == style ? _style : style.get(); }
     public void setNStyle(final NStyle style) {
         if (null == this.style) {
             _style = style;
-            resize();
+            requestResize();
         } else {
             this.style.set(style);
         }
@@ -180,7 +129,7 @@ public class NContainer extends Region {
     public ObjectProperty<NStyle> nStyleProperty() {
         if (null == style) {
             style = new ObjectPropertyBase<>(_style) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() { requestRedraw(); }
                 @Override public Object getBean() { return NContainer.this; }
                 @Override public String getName() { return "style"; }
             };
@@ -189,20 +138,24 @@ public class NContainer extends Region {
         return style;
     }
 
-    public NShape getNShape() { return nShape; }
+    @Override public NShape getNShape() { return nShape; }
     public void setNShape(final NShape nShape) {
         this.nShape = nShape;
-        resize();
+        requestResize();
     }
 
 
     // ******************** Layout ********************************************
     @Override public void layoutChildren() {
+        final long start = RenderMetrics.start(this);
         super.layoutChildren();
-        resize();
+        requestResize();
+        RenderMetrics.record(this, Phase.LAYOUT, start);
     }
 
-    protected void resize() {
+    @Override protected double getMaxShadowSize() { return 5; }
+
+    @Override protected void resize() {
         width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
         height = getHeight() - getInsets().getTop() - getInsets().getBottom();
         size   = width < height ? width : height;
@@ -246,15 +199,8 @@ public class NContainer extends Region {
 
             cornerRadius = cornerRadius < 1 ? 1 : cornerRadius;
 
-            shadowRadius   = Helper.clamp(2, 5, 0.12 * size);
+            deriveShadow();
             shadowRadiusX2 = shadowRadius * 2;
-            shadowOffset   = Helper.clamp(2, 5, 0.04 * size);
-
-            outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-
-            innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
 
             double containerWidth;
             double containerHeight;
@@ -281,41 +227,34 @@ public class NContainer extends Region {
             container.setMaxSize(containerWidth, containerHeight);
             container.setPrefSize(containerWidth, containerHeight);
             container.relocate(shadowRadius, shadowRadius);
+
+            embossedSprite = null;
+            sunkenSprite   = null;
+
             redraw();
         }
     }
 
-    protected void redraw() {
+    @Override protected void redraw() {
         ctx.clearRect(0, 0, width, height);
-        ctx.save();
-        switch(getNStyle()) {
-            case SUNKEN  : ctx.setEffect(innerShadow); break;
-            case EMBOSSED: ctx.setEffect(outerShadow); break;
-        }
-        ctx.setFill(getBackgroundColor());
-        switch (nShape) {
-            case RECTANGULAR:
-                if (NStyle.SUNKEN == getNStyle()) {
-                    ctx.fillRoundRect(0, 0, width, height, cornerRadius, cornerRadius);
-                } else {
-                    ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, cornerRadius, cornerRadius);
-                }
-                break;
-            case PILL       :
-                if (NStyle.SUNKEN == getNStyle()) {
-                    ctx.fillRoundRect(0, 0, width, height, height, height);
-                } else {
-                    ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, height, height);
-                }
-                break;
-            case CIRCULAR:
-                if (NStyle.SUNKEN == getNStyle()) {
-                    ctx.fillOval(0, 0, size, size);
-                } else {
-                    ctx.fillOval(shadowRadius, shadowRadius, size - shadowRadiusX2, size - shadowRadiusX2);
-                }
-                break;
+        if (width <= 0 || height <= 0) { return; }
+        getSprite(getNStyle()).draw(ctx, 0, 0);
+    }
+
+    private Sprite getSprite(final NStyle style) {
+        if (NStyle.SUNKEN == style) {
+            if (null == sunkenSprite) { sunkenSprite = createSprite(0, style); }
+            return sunkenSprite;
+        } else {
+            if (null == embossedSprite) { embossedSprite = createSprite(shadowRadius, style); }
+            return embossedSprite;
         }
-        ctx.restore();
+    }
+
+    private Sprite createSprite(final double inset, final NStyle style) {
+        double w   = NShape.CIRCULAR == nShape ? size : width;
+        double h   = NShape.CIRCULAR == nShape ? size : height;
+        double arc = NShape.PILL == nShape ? height : cornerRadius;
+        return createSprite(nShape, w, h, inset, arc, getBackgroundColor(), style);
     }
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import eu.hansolo.fx.neumorphic.tools.Helper;
+import eu.hansolo.fx.neumorphic.tools.NTheme;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
+import eu.hansolo.fx.neumorphic.tools.RenderScheduler;
+import eu.hansolo.fx.neumorphic.tools.Themeable;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+
+/**
+ * Virtualized list or grid of NContainer cells. Only the cells for the visible
+ * rows plus a few overscan rows will be created, cells that scroll out of the
+ * viewport will be reused for the items that scroll in and will be bound to
+ * their new item with the cell binder. Because all cells have the same size
+ * they share the cached shadow sprites of the SpriteCache.
+ * If the cell width is <= 0 each cell will fill the width (list), otherwise
+ * as many columns as fit into the width will be used (grid).
+ */
+public class NContainerFlow<T> extends Region implements Themeable {
+    private static final double                      PREFERRED_WIDTH  = 250;
+    private static final double                      PREFERRED_HEIGHT = 400;
+    private static final double                      MINIMUM_WIDTH    = 10;
+    private static final double                      MINIMUM_HEIGHT   = 10;
+    private static final double                      MAXIMUM_WIDTH    = 4096;
+    private static final double                      MAXIMUM_HEIGHT   = 4096;
+    public  static final int                         DEFAULT_OVERSCAN = 2;
+    private              ObservableList<T>           items;
+    private              Supplier<NContainer>        cellFactory;
+    private              BiConsumer<NContainer, T>   cellBinder;
+    private              double                      cellWidth;
+    private              double                      cellHeight;
+    private              double                      spacing;
+    private              int                         overscan;
+    private              Pane                        viewport;
+    private              Rectangle                   clip;
+    private              ScrollBar                   scrollBar;
+    private              List<NContainer>            cells;
+    private              Deque<NContainer>           pool;
+    private              int[]                       boundIndices;
+    private              ListChangeListener<T>       itemsListener;
+    private              NTheme                      theme;
+
+
+    // ******************** Constructors **************************************
+    public NContainerFlow() {
+        this(FXCollections.observableArrayList(), (cell, item) -> {});
+    }
+    public NContainerFlow(final ObservableList<T> items, final BiConsumer<NContainer, T> cellBinder) {
+        this.items         = items;
+        this.cellBinder    = cellBinder;
+        this.cellFactory   = NContainer::new;
+        this.cellWidth     = 0;
+        this.cellHeight    = 80;
+        this.spacing       = 10;
+        this.overscan      = DEFAULT_OVERSCAN;
+        this.cells         = new ArrayList<>();
+        this.pool          = new ArrayDeque<>();
+        this.boundIndices  = new int[0];
+        this.itemsListener = c -> invalidateCells();
+        this.theme         = NTheme.DEFAULT;
+        initGraphics();
+        registerListeners();
+    }
+
+
+    // ******************** Initialization ************************************
+    private void initGraphics() {
+        if (Double.compare(getPrefWidth(), 0.0) <= 0 || Double.compare(getPrefHeight(), 0.0) <= 0 || Double.compare(getWidth(), 0.0) <= 0 ||
+            Double.compare(getHeight(), 0.0) <= 0) {
+            if (getPrefWidth() > 0 && getPrefHeight() > 0) {
+                setPrefSize(getPrefWidth(), getPrefHeight());
+            } else {
+                setPrefSize(PREFERRED_WIDTH, PREFERRED_HEIGHT);
+            }
+        }
+
+        clip = new Rectangle();
+
+        viewport = new Pane();
+        viewport.setClip(clip);
+
+        scrollBar = new ScrollBar();
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.setMin(0);
+
+        getChildren().setAll(viewport, scrollBar);
+    }
+
+    private void registerListeners() {
+        items.addListener(itemsListener);
+        scrollBar.valueProperty().addListener(o -> {
+            RenderScheduler.notifyMotion();
+            requestLayout();
+        });
+        addEventHandler(ScrollEvent.SCROLL, e -> {
+            scrollBar.setValue(Helper.clamp(scrollBar.getMin(), scrollBar.getMax(), scrollBar.getValue() - e.getDeltaY()));
+            e.consume();
+        });
+    }
+
+
+    // ******************** Methods *******************************************
+    @Override protected double computeMinWidth(final double height) { return MINIMUM_WIDTH; }
+    @Override protected double computeMinHeight(final double width) { return MINIMUM_HEIGHT; }
+    @Override protected double computePrefWidth(final double height) { return super.computePrefWidth(height); }
+    @Override protected double computePrefHeight(final double width) { return super.computePrefHeight(width); }
+    @Override protected double computeMaxWidth(final double height) { return MAXIMUM_WIDTH; }
+    @Override protected double computeMaxHeight(final double width) { return MAXIMUM_HEIGHT; }
+
+    public ObservableList<T> getItems() { return items; }
+    public void setItems(final ObservableList<T> items) {
+        this.items.removeListener(itemsListener);
+        this.items = null == items ? FXCollections.observableArrayList() : items;
+        this.items.addListener(itemsListener);
+        scrollBar.setValue(0);
+        invalidateCells();
+    }
+
+    public BiConsumer<NContainer, T> getCellBinder() { return cellBinder; }
+    /**
+     * The cell binder will be called each time a cell is bound to a new item,
+     * it should update the content of the given cell (e.g. via getNChildren())
+     * and should not keep a reference to the cell.
+     * @param cellBinder the binder that shows the given item in the given cell
+     */
+    public void setCellBinder(final BiConsumer<NContainer, T> cellBinder) {
+        this.cellBinder = cellBinder;
+        invalidateCells();
+    }
+
+    public Supplier<NContainer> getCellFactory() { return cellFactory; }
+    public void setCellFactory(final Supplier<NContainer> cellFactory) {
+        this.cellFactory = cellFactory;
+        viewport.getChildren().clear();
+        cells.clear();
+        pool.clear();
+        boundIndices = new int[0];
+        requestLayout();
+    }
+
+    public double getCellWidth() { return cellWidth; }
+    public void setCellWidth(final double cellWidth) {
+        this.cellWidth = cellWidth;
+        invalidateCells();
+    }
+
+    public double getCellHeight() { return cellHeight; }
+    public void setCellHeight(final double cellHeight) {
+        this.cellHeight = Helper.clamp(MINIMUM_HEIGHT, MAXIMUM_HEIGHT, cellHeight);
+        invalidateCells();
+    }
+
+    public double getSpacing() { return spacing; }
+    public void setSpacing(final double spacing) {
+        this.spacing = Math.max(0, spacing);
+        invalidateCells();
+    }
+
+    public int getOverscan() { return overscan; }
+    /**
+     * @param overscan number of rows above and below the viewport that will be kept bound
+     */
+    public void setOverscan(final int overscan) {
+        this.overscan = Math.max(0, overscan);
+        requestLayout();
+    }
+
+    /**
+     * @return the number of cells that are currently created, independent of the number of items
+     */
+    public int getCellCount() { return cells.size() + pool.size(); }
+
+    public void scrollTo(final int index) {
+        if (index < 0 || index >= items.size()) { return; }
+        scrollBar.setValue(Helper.clamp(scrollBar.getMin(), scrollBar.getMax(), (index / getColumns(getContentWidth())) * (cellHeight + spacing)));
+    }
+
+    @Override public NTheme getTheme() { return theme; }
+    @Override public void setTheme(final NTheme theme) {
+        this.theme = theme;
+        cells.forEach(cell -> cell.setTheme(theme));
+        pool.forEach(cell -> cell.setTheme(theme));
+    }
+
+    private void invalidateCells() {
+        Arrays.fill(boundIndices, -1);
+        requestLayout();
+    }
+
+    private double getContentWidth() {
+        double scrollBarWidth = scrollBar.isVisible() ? scrollBar.prefWidth(-1) : 0;
+        return Math.max(0, getWidth() - getInsets().getLeft() - getInsets().getRight() - scrollBarWidth);
+    }
+
+    private int getColumns(final double contentWidth) {
+        return cellWidth <= 0 ? 1 : Math.max(1, (int) ((contentWidth + spacing) / (cellWidth + spacing)));
+    }
+
+
+    // ******************** Layout ********************************************
+    @Override protected void layoutChildren() {
+        final long start = RenderMetrics.start(this);
+        layoutCells();
+        RenderMetrics.record(this, Phase.LAYOUT, start);
+    }
+
+    private void layoutCells() {
+        double left   = getInsets().getLeft();
+        double top    = getInsets().getTop();
+        double height = getHeight() - top - getInsets().getBottom();
+        if (height <= 0 || getWidth() <= 0) { return; }
+
+        double rowHeight   = cellHeight + spacing;
+        double totalHeight = Math.max(0, Math.ceil(items.size() / (double) getColumns(getContentWidth())) * rowHeight - spacing);
+        scrollBar.setVisible(totalHeight > height);
+
+        double contentWidth = getContentWidth();
+        int    columns      = getColumns(contentWidth);
+        int    rows         = (int) Math.ceil(items.size() / (double) columns);
+        double width        = cellWidth <= 0 ? contentWidth : cellWidth;
+        double maxOffset    = Math.max(0, rows * rowHeight - spacing - height);
+
+        scrollBar.setMax(maxOffset);
+        scrollBar.setVisibleAmount(maxOffset * height / Math.max(height, rows * rowHeight));
+        scrollBar.setUnitIncrement(rowHeight * 0.5);
+        scrollBar.setBlockIncrement(height);
+        if (scrollBar.getValue() > maxOffset) { scrollBar.setValue(maxOffset); }
+        scrollBar.resizeRelocate(left + contentWidth, top, scrollBar.prefWidth(-1), height);
+
+        viewport.resizeRelocate(left, top, contentWidth, height);
+        clip.setWidth(contentWidth);
+        clip.setHeight(height);
+
+        double offset       = scrollBar.getValue();
+        int    visibleRows  = (int) Math.ceil(height / rowHeight) + 1 + 2 * overscan;
+        int    cellCount    = Math.min(items.size(), visibleRows * columns);
+        setCellCount(cellCount);
+        if (0 == cellCount) { return; }
+
+        int firstRow   = Math.max(0, (int) (offset / rowHeight) - overscan);
+        int firstIndex = Math.min(firstRow * columns, Math.max(0, items.size() - cellCount));
+        firstIndex     = firstIndex - firstIndex % columns;
+        int lastIndex  = Math.min(items.size(), firstIndex + cellCount);
+
+        // Each index always uses the same slot, so scrolling only rebinds the cells of new rows
+        boolean[] used = new boolean[cellCount];
+        for (int index = firstIndex ; index < lastIndex ; index++) {
+            int        slot = index % cellCount;
+            NContainer cell = cells.get(slot);
+            if (boundIndices[slot] != index) {
+                cellBinder.accept(cell, items.get(index));
+                boundIndices[slot] = index;
+            }
+            used[slot] = true;
+            cell.setVisible(true);
+            cell.resizeRelocate((index % columns) * (width + spacing), (index / columns) * rowHeight - offset, width, cellHeight);
+        }
+        for (int slot = 0 ; slot < cellCount ; slot++) {
+            if (!used[slot]) { cells.get(slot).setVisible(false); }
+        }
+    }
+
+    private void setCellCount(final int cellCount) {
+        if (cells.size() == cellCount) { return; }
+        while (cells.size() < cellCount) {
+            NContainer cell = pool.isEmpty() ? cellFactory.get() : pool.pop();
+            cell.setManaged(false);
+            cell.setTheme(theme);
+            cells.add(cell);
+        }
+        while (cells.size() > cellCount) {
+            pool.push(cells.remove(cells.size() - 1));
+        }
+        viewport.getChildren().setAll(cells);
+        // The slots of the indices depend on the number of cells
+        boundIndices = new int[cellCount];
+        Arrays.fill(boundIndices, -1);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
+import eu.hansolo.fx.neumorphic.tools.DetailPolicy;
+import eu.hansolo.fx.neumorphic.tools.LevelOfDetail;
+import eu.hansolo.fx.neumorphic.tools.NShape;
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.NTheme;
+import eu.hansolo.fx.neumorphic.tools.RenderEvents;
+import eu.hansolo.fx.neumorphic.tools.RenderEvents.NRedraw;
+import eu.hansolo.fx.neumorphic.tools.RenderEvents.NResize;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
+import eu.hansolo.fx.neumorphic.tools.RenderScheduler;
+import eu.hansolo.fx.neumorphic.tools.RenderScheduler.RenderHandle;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Mark;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+import eu.hansolo.fx.neumorphic.tools.Themeable;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ObjectPropertyBase;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.util.function.Consumer;
+
+
+/**
+ * Base class of the canvas based controls.
+ * Owns the canvas, the background color with the shadow colors derived from it,
+ * the theme and the render lifecycle. Subclasses create the canvas in their
+ * initGraphics() and implement resize() and redraw(), both are only called by
+ * the RenderScheduler once per pulse. Both calls are measured by the
+ * RenderMetrics and emitted as NResize and NRedraw flight recorder events,
+ * a redraw() that is called from resize() counts as resize.
+ * @param <C> the type of the control, used by update()
+ */
+public abstract class NControl<C extends NControl<C>> extends Region implements Themeable {
+    protected            double                size;
+    protected            double                width;
+    protected            double                height;
+    protected            Canvas                canvas;
+    protected            GraphicsContext       ctx;
+    protected            Color                 brightShadowColor;
+    protected            Color                 darkShadowColor;
+    protected            double                shadowRadius;
+    protected            double                shadowOffset;
+    private              Color                 _backgroundColor;
+    private              ObjectProperty<Color> backgroundColor;
+    private              NTheme                theme;
+    private              boolean               colorsDirty;
+    private        final RenderHandle          renderHandle;
+
+
+    // ******************** Constructors **************************************
+    protected NControl() {
+        theme             = NTheme.DEFAULT;
+        _backgroundColor  = NTheme.DEFAULT.getBackgroundColor();
+        brightShadowColor = NTheme.DEFAULT.getPalette().getBrightShadowColor();
+        darkShadowColor   = NTheme.DEFAULT.getPalette().getDarkShadowColor();
+        shadowRadius      = 6;
+        shadowOffset      = 2;
+        renderHandle      = RenderScheduler.register(this, this::performResize, this::performRedraw);
+    }
+
+
+    // ******************** Methods *******************************************
+    @Override public NTheme getTheme() { return theme; }
+    @Override public void setTheme(final NTheme theme) {
+        this.theme = theme;
+        beginUpdate();
+        try {
+            applyTheme(theme);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Applies the colors of the given theme, subclasses add their own colors.
+     * Always called within beginUpdate() / endUpdate().
+     * @param theme the theme
+     */
+    protected void applyTheme(final NTheme theme) {
+        setBackgroundColor(theme.getBackgroundColor());
+    }
+
+    /**
+     * @return the shape the control is drawn with
+     */
+    public NShape getNShape() { return NShape.RECTANGULAR; }
+
+    public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
+    public void setBackgroundColor(final Color backgroundColor) {
+        if (null == this.backgroundColor) {
+            _backgroundColor = backgroundColor;
+            colorsDirty      = true;
+            requestResize();
+        } else {
+            this.backgroundColor.set(backgroundColor);
+        }
+    }
+    public ObjectProperty<Color> backgroundColorProperty() {
+        if (null == backgroundColor) {
+            backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
+                @Override protected void invalidated() {
+                    colorsDirty = true;
+                    requestResize();
+                }
+                @Override public Object getBean() { return NControl.this; }
+                @Override public String getName() { return "backgroundColor"; }
+            };
+            _backgroundColor = null;
+        }
+        return backgroundColor;
+    }
+
+
+    // ******************** Layout ********************************************
+    public void beginUpdate() { renderHandle.beginUpdate(); }
+
+    public void endUpdate() { renderHandle.endUpdate(); }
+
+    /**
+     * Applies the given changes to this control within beginUpdate() / endUpdate(),
+     * so that the control is resized and redrawn only once.
+     * @param update the changes to apply
+     */
+    @SuppressWarnings("unchecked")
+    public void update(final Consumer<C> update) {
+        beginUpdate();
+        try {
+            update.accept((C) this);
+        } finally {
+            endUpdate();
+        }
+    }
+
+    protected void requestResize() { renderHandle.requestResize(); }
+
+    protected void requestRedraw() { renderHandle.requestRedraw(); }
+
+    public DetailPolicy getDetailPolicy() { return renderHandle.getDetailPolicy(); }
+    /**
+     * @param detailPolicy the level of detail policy of this control, null to use DetailPolicy.getDefault()
+     */
+    public void setDetailPolicy(final DetailPolicy detailPolicy) { renderHandle.setDetailPolicy(detailPolicy); }
+
+    protected LevelOfDetail getLevelOfDetail() { return renderHandle.getLevelOfDetail(); }
+
+    /**
+     * Derives the colors that depend on the background color, called before
+     * the next resize() after the background color changed.
+     * @param palette the palette of the current background color
+     */
+    protected void updateColors(final NTheme.Palette palette) {
+        brightShadowColor = palette.getBrightShadowColor();
+        darkShadowColor   = palette.getDarkShadowColor();
+    }
+
+    /**
+     * @return the maximum shadow radius and offset of this control
+     */
+    protected double getMaxShadowSize() { return ControlGeometry.MAX_SHADOW_SIZE; }
+
+    /**
+     * Derives the shadow radius and offset from the current size, called by resize()
+     */
+    protected void deriveShadow() {
+        shadowRadius = ControlGeometry.getShadowRadius(size, getMaxShadowSize());
+        shadowOffset = ControlGeometry.getShadowOffset(size, getMaxShadowSize());
+    }
+
+    /**
+     * Returns a cached sprite in the current level of detail which uses the
+     * shadow parameters of this control and the render scale of its canvas.
+     */
+    protected Sprite createSprite(final NShape shape, final double width, final double height, final double inset, final double arc, final Color fill, final NStyle style) {
+        return createSprite(shape, width, height, inset, arc, fill, style, darkShadowColor);
+    }
+    protected Sprite createSprite(final NShape shape, final double width, final double height, final double inset, final double arc, final Color fill, final NStyle style, final Color darkShadowColor) {
+        return createSprite(shape, width, height, inset, arc, fill, style, shadowOffset, darkShadowColor);
+    }
+    protected Sprite createSprite(final NShape shape, final double width, final double height, final double inset, final double arc, final Color fill, final NStyle style, final double shadowOffset, final Color darkShadowColor) {
+        LevelOfDetail lod = getLevelOfDetail();
+        return SpriteCache.getSprite(shape, width, height, inset, arc, fill, lod.getStyle(style), shadowRadius, shadowOffset, brightShadowColor, darkShadowColor,
+                                     lod.getScale(SpriteCache.getRenderScale(canvas)), lod.getBlurType());
+    }
+
+    /**
+     * Returns a cached sprite of the given text with a glow in the current
+     * level of detail and the render scale of the canvas.
+     * @see SpriteCache#getTextSprite(String, Font, Color, double, double, double, Color, double, javafx.scene.effect.BlurType)
+     */
+    protected Sprite createTextSprite(final String text, final Font font, final Color fill, final double maxWidth, final double height, final double glowRadius, final Color glowColor) {
+        LevelOfDetail lod = getLevelOfDetail();
+        return SpriteCache.getTextSprite(text, font, fill, maxWidth, height, glowRadius, glowColor, lod.getScale(SpriteCache.getRenderScale(canvas)), lod.getBlurType());
+    }
+
+    /**
+     * Returns a cached sprite of the given mark with a glow in the current
+     * level of detail and the render scale of the canvas. If effects are
+     * disabled in the current level of detail the mark is rendered without a glow.
+     * @see SpriteCache#getMarkSprite(Mark, double, Color, double, Color, double, javafx.scene.effect.BlurType)
+     */
+    protected Sprite createMarkSprite(final Mark mark, final double size, final Color fill, final double glowRadius, final Color glowColor) {
+        LevelOfDetail lod = getLevelOfDetail();
+        return SpriteCache.getMarkSprite(mark, size, fill, lod.isEffectsEnabled() ? glowRadius : 0, glowColor, lod.getScale(SpriteCache.getRenderScale(canvas)), lod.getBlurType());
+    }
+
+    private void performResize() {
+        final long    start = RenderMetrics.start(this);
+        final NResize event = RenderEvents.isResizeEnabled() ? new NResize() : null;
+        if (null != event) { event.begin(); }
+        if (colorsDirty) {
+            updateColors(NTheme.getPalette(getBackgroundColor()));
+            colorsDirty = false;
+        }
+        resize();
+        RenderMetrics.record(this, Phase.RESIZE, start);
+        if (null != event) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.set(this, width, height, getNShape(), getLevelOfDetail());
+                event.commit();
+            }
+        }
+    }
+
+    private void performRedraw() {
+        final long    start = RenderMetrics.start(this);
+        final NRedraw event = RenderEvents.isRedrawEnabled() ? new NRedraw() : null;
+        if (null != event) { event.begin(); }
+        redraw();
+        RenderMetrics.record(this, Phase.REDRAW, start);
+        if (null != event) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.set(this, width, height, getNShape(), getLevelOfDetail());
+                event.commit();
+            }
+        }
+    }
+
+    protected abstract void resize();
+
+    protected abstract void redraw();
+}
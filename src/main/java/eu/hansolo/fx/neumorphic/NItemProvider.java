@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import java.util.List;
+
+
+/**
+ * Source for the items of a NChoiceBox that will be loaded page by page on a
+ * background thread. The pages will be requested in order, starting at 0.
+ * A page that contains less than pageSize items marks the end of the items.
+ */
+@FunctionalInterface
+public interface NItemProvider<T> {
+    int DEFAULT_PAGE_SIZE = 500;
+
+    /**
+     * Loads the given page, this method will never be called on the FX application thread
+     * @param pageIndex the index of the page, starting at 0
+     * @param pageSize  the max number of items of the page
+     * @return the items of the requested page
+     * @throws Exception if the page could not be loaded
+     */
+    List<T> loadPage(int pageIndex, int pageSize) throws Exception;
+
+    default int getPageSize() { return DEFAULT_PAGE_SIZE; }
+}
@@ -16,7 +16,12 @@
 
 package eu.hansolo.fx.neumorphic;
 
+import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
 import eu.hansolo.fx.neumorphic.tools.Helper;
+import eu.hansolo.fx.neumorphic.tools.NShape;
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Mark;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
 import javafx.beans.DefaultProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.ObservableList;
@@ -24,11 +29,7 @@ import javafx.geometry.Pos;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Label;
-import javafx.scene.effect.BlurType;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.InnerShadow;
 import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
@@ -44,21 +45,13 @@ public class NRadioButton extends NToggleButton {
     private static final double                      MAXIMUM_WIDTH    = 1024;
     private static final double                      MAXIMUM_HEIGHT   = 1024;
     private static final double                      SPACER           = 5;
-    private              double                      size;
-    private              double                      width;
-    private              double                      height;
     private              HBox                        pane;
-    private              Canvas                      canvas;
-    private              GraphicsContext             ctx;
     private              Label                       label;
-    private              Color                       brightShadowColor;
-    private              Color                       darkShadowColor;
-    private              double                      shadowRadius;
-    private              double                      shadowOffset;
     private              double                      glowRadius;
-    private              DropShadow                  outerShadow;
-    private              InnerShadow                 innerShadow;
-    private              DropShadow                  glow;
+    private              Color                       glowColor;
+    private              Sprite                      embossedSprite;
+    private              Sprite                      sunkenSprite;
+    private              Sprite                      dotSprite;
 
 
     // ******************** Constructors **************************************
@@ -67,16 +60,7 @@ public class NRadioButton extends NToggleButton {
     }
     public NRadioButton(final String text) {
         label             = new Label(text);
-        brightShadowColor = Helper.getColorWithOpacity(Helper.derive(getBackgroundColor(), 1.1), 0.5);
-        darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(getBackgroundColor(), 0.9), 0.5);
-        shadowRadius      = 6;
-        shadowOffset      = 2;
         glowRadius        = 10;
-        outerShadow       = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-        glow              = new DropShadow(BlurType.TWO_PASS_BOX, getSelectedColor(), glowRadius, 0.5, 0, 0);
-        innerShadow       = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
         initGraphics();
         registerListeners();
     }
@@ -109,15 +93,9 @@ public class NRadioButton extends NToggleButton {
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
+        widthProperty().addListener(o -> requestResize());
+        heightProperty().addListener(o -> requestResize());
         canvas.setOnMousePressed(e -> fire());
-        backgroundColorProperty().addListener(o -> {
-            Color   backgroundColor = getBackgroundColor();
-            boolean isBright        = Helper.isBright(backgroundColor);
-            brightShadowColor = Helper.getColorWithOpacity(Helper.derive(backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-            darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-        });
         textColorProperty().addListener(o -> label.setTextFill(getTextColor()));
         fontProperty().addListener(o -> label.setFont(getFont()));
     }
@@ -133,6 +111,8 @@ public class NRadioButton extends NToggleButton {
 
     @Override public ObservableList<Node> getChildren() { return super.getChildren(); }
 
+    @Override public NShape getNShape() { return NShape.CIRCULAR; }
+
     public String getText() { return label.getText(); }
     public void setText(final String text) { label.setText(text); }
     public StringProperty textProperty() { return label.textProperty(); }
@@ -147,7 +127,7 @@ public class NRadioButton extends NToggleButton {
     // ******************** Layout ********************************************
     @Override public void layoutChildren() {
         super.layoutChildren();
-        resize();
+        requestResize();
     }
 
     @Override protected void resize() {
@@ -163,18 +143,14 @@ public class NRadioButton extends NToggleButton {
             canvas.setWidth(size);
             canvas.setHeight(size);
 
-            shadowRadius = Helper.clamp(2, 6, 0.12 * size);
-            shadowOffset = Helper.clamp(2, 6, 0.04 * size);
-
-            outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            deriveShadow();
 
-            innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            glowColor  = ControlGeometry.getGlowColor(getBackgroundColor(), getSelectedColor());
+            glowRadius = ControlGeometry.getGlowRadius(size);
 
-            Color glowColor = Helper.isBright(getBackgroundColor()) ? Helper.getColorWithOpacity(getSelectedColor(), 0.25) : getSelectedColor();
-            glowRadius = Helper.clamp(4, 8, size * 0.2);
-            glow = new DropShadow(BlurType.TWO_PASS_BOX, glowColor, glowRadius, 0.0, 0, 0);
+            embossedSprite = null;
+            sunkenSprite   = null;
+            dotSprite      = null;
 
             redraw();
         }
@@ -182,25 +158,29 @@ public class NRadioButton extends NToggleButton {
 
     @Override protected void redraw() {
         ctx.clearRect(0, 0, size, size);
+        if (size <= 0) { return; }
         boolean isSelected     = isSelected();
-        double  shadowRadiusX2 = 2 * shadowRadius;
         double  shadowRadiusX3 = 3 * shadowRadius;
-        double  shadowRadiusX4 = 4 * shadowRadius;
-        ctx.save();
-        ctx.setEffect(isSelected ? innerShadow : outerShadow);
-        ctx.setFill(getBackgroundColor());
+        getSprite(isSelected).draw(ctx, 0, 0);
         if (isSelected) {
-            ctx.fillOval(shadowRadius, shadowRadius, size - shadowRadiusX2, size - shadowRadiusX2);
-        } else {
-            ctx.fillOval(shadowRadiusX2, shadowRadiusX2, size - shadowRadiusX4, size - shadowRadiusX4);
+            // The glowing dot is a cached sprite so that redrawing doesn't apply any effect
+            if (null == dotSprite) { dotSprite = createMarkSprite(Mark.DOT, size - shadowRadiusX3 * 2, getSelectedColor(), glowRadius, glowColor); }
+            double offset = (size - dotSprite.getWidth()) * 0.5;
+            dotSprite.draw(ctx, offset, offset);
         }
-        ctx.restore();
+    }
+
+    private Sprite getSprite(final boolean isSelected) {
         if (isSelected) {
-            ctx.save();
-            ctx.setEffect(glow);
-            ctx.setFill(getSelectedColor());
-            ctx.fillOval(shadowRadiusX3, shadowRadiusX3, size - shadowRadiusX3 * 2, size - shadowRadiusX3 * 2);
-            ctx.restore();
+            if (null == sunkenSprite) { sunkenSprite = createSprite(shadowRadius, NStyle.SUNKEN); }
+            return sunkenSprite;
+        } else {
+            if (null == embossedSprite) { embossedSprite = createSprite(2 * shadowRadius, NStyle.EMBOSSED); }
+            return embossedSprite;
         }
     }
+
+    private Sprite createSprite(final double inset, final NStyle style) {
+        return createSprite(NShape.CIRCULAR, size, size, inset, size, getBackgroundColor(), style);
+    }
 }
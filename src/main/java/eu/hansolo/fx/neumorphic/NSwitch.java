@@ -18,8 +18,16 @@ package eu.hansolo.fx.neumorphic;
 
 import eu.hansolo.fx.neumorphic.event.NEvent;
 import eu.hansolo.fx.neumorphic.event.NSwitchEvent;
+import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
 import eu.hansolo.fx.neumorphic.tools.NShape;
 import eu.hansolo.fx.neumorphic.tools.Helper;
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.NTheme;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+import eu.hansolo.fx.neumorphic.tools.StateAnimation;
+import eu.hansolo.fx.neumorphic.tools.RenderEvents;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
 import javafx.beans.DefaultProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
@@ -30,21 +38,16 @@ import javafx.event.EventHandler;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ContentDisplay;
-import javafx.scene.effect.BlurType;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.InnerShadow;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
-import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
 
 
 @DefaultProperty("children")
-public class NSwitch extends Region {
+public class NSwitch extends NControl<NSwitch> {
     public enum NSwitchStyle { NUMBER, TEXT }
 
     private static final double                                     PREFERRED_WIDTH  = 100;
@@ -54,45 +57,35 @@ public class NSwitch extends Region {
     private static final double                                     MAXIMUM_WIDTH    = 1024;
     private static final double                                     MAXIMUM_HEIGHT   = 1024;
     private static final double                                     OFFSET           = 0.5;
-    private              double                                     size;
-    private              double                                     width;
-    private              double                                     height;
     private              NShape                                     nShape;
     private              Pane                                       pane;
-    private              Canvas                                     canvas;
-    private              GraphicsContext                            ctx;
-    private              Color                                      _backgroundColor;
-    private              ObjectProperty<Color>                      backgroundColor;
     private              Color                                      _textColor;
     private              ObjectProperty<Color>                      textColor;
     private              Color                                      _selectedColor;
     private              ObjectProperty<Color>                      selectedColor;
     private              Font                                       _font;
     private              ObjectProperty<Font>                       font;
-    private              Color                                      brightShadowColor;
-    private              Color                                      darkShadowColor;
     private              ContentDisplay                             contentDisplay;
     private              ObjectProperty<EventHandler<NEvent>>       onSwitch;
     private              BooleanProperty                            on;
     private              NSwitchStyle                               switchStyle;
     private              double                                     cornerRadius;
-    private              double                                     shadowRadius;
-    private              double                                     shadowOffset;
     private              double                                     glowRadius;
-    private              DropShadow                                 outerShadow;
-    private              InnerShadow                                innerShadow;
-    private              DropShadow                                 glow;
+    private              Color                                      glowColor;
+    private              boolean                                    glowEnabled;
+    private              StateAnimation                             knob;
+    private              Sprite                                     backgroundSprite;
+    private              Sprite                                     knobSprite;
+    private              Sprite                                     onTextSprite;
+    private              Sprite                                     offTextSprite;
 
 
     // ******************** Constructors **************************************
     public NSwitch() {
         nShape = NShape.PILL;
-        _backgroundColor  = Color.web("#e2e6e8");
-        _textColor        = Color.web("#6c737c");
-        _selectedColor    = Color.web("#236dee");
+        _textColor        = NTheme.DEFAULT.getTextColor();
+        _selectedColor    = NTheme.DEFAULT.getSelectedColor();
         _font             = Font.font(10);
-        brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 1.1), 0.5);
-        darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 0.9), 0.5);
         contentDisplay    = ContentDisplay.LEFT;
         onSwitch          = new ObjectPropertyBase<>() {
             @Override protected void invalidated() {
@@ -104,9 +97,11 @@ public class NSwitch extends Region {
         };
         on                = new BooleanPropertyBase(false) {
             @Override protected void invalidated() {
+                RenderEvents.stateChanged(this);
                 if (!isDisabled()) {
                     fireEvent(get() ? new NSwitchEvent(NSwitchEvent.ON) : new NSwitchEvent(NSwitchEvent.OFF));
                 }
+                knob.animateTo(get() ? 1 : 0);
                 layoutChildren();
             }
             @Override public Object getBean() { return NSwitch.this; }
@@ -114,14 +109,10 @@ public class NSwitch extends Region {
         };
         switchStyle       = NSwitchStyle.TEXT;
         cornerRadius      = 5;
-        shadowRadius      = 6;
-        shadowOffset      = 2;
         glowRadius        = 10;
-        outerShadow       = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-        glow              = new DropShadow(BlurType.TWO_PASS_BOX, _selectedColor, glowRadius, 0.5, 0, 0);
-        innerShadow       = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+        glowColor         = _selectedColor;
+        glowEnabled       = true;
+        knob              = new StateAnimation(this, this::requestRedraw);
         initGraphics();
         registerListeners();
     }
@@ -149,8 +140,8 @@ public class NSwitch extends Region {
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
+        widthProperty().addListener(o -> requestResize());
+        heightProperty().addListener(o -> requestResize());
         canvas.setOnMousePressed(e -> checkState(e));
     }
 
@@ -165,40 +156,17 @@ public class NSwitch extends Region {
 
     @Override public ObservableList<Node> getChildren() { return super.getChildren(); }
 
-    public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
-    public void setBackgroundColor(final Color backgroundColor) {
-        if (null == this.backgroundColor) {
-            boolean isBright  = Helper.isBright(backgroundColor);
-            _backgroundColor  = backgroundColor;
-            brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-            darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-            resize();
-        } else {
-            this.backgroundColor.set(backgroundColor);
-        }
-    }
-    public ObjectProperty<Color> backgroundColorProperty() {
-        if (null == backgroundColor) {
-            backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
-                @Override protected void invalidated() {
-                    boolean isBright  = Helper.isBright(get());
-                    brightShadowColor = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-                    darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-                    resize();
-                }
-                @Override public Object getBean() { return NSwitch.this; }
-                @Override public String getName() { return "backgroundColor"; }
-            };
-            _backgroundColor = null;
-        }
-        return backgroundColor;
+    @Override protected void applyTheme(final NTheme theme) {
+        super.applyTheme(theme);
+        setTextColor(theme.getTextColor());
+        setSelectedColor(theme.getSelectedColor());
     }
 
     public Color getTextColor() { return null == textColor ? _textColor : textColor.get(); }
     public void setTextColor(final Color textColor) {
         if (null == this.textColor) {
             _textColor = textColor;
-            redraw();
+            requestRedraw();
         } else {
             this.textColor.set(textColor);
         }
@@ -206,7 +174,7 @@ public class NSwitch extends Region {
     public ObjectProperty<Color> textColorProperty() {
         if (null == textColor) {
             textColor = new ObjectPropertyBase<Color>(_textColor) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() { requestRedraw(); }
                 @Override public Object getBean() { return NSwitch.this; }
                 @Override public String getName() { return "textColor"; }
             };
@@ -219,7 +187,7 @@ public class NSwitch extends Region {
     public void setSelectedColor(final Color selectedColor) {
         if (null == this.selectedColor) {
             _selectedColor = selectedColor;
-            redraw();
+            requestResize();
         } else {
             this.selectedColor.set(selectedColor);
         }
@@ -227,7 +195,7 @@ public class NSwitch extends Region {
     public ObjectProperty<Color> selectedColorProperty() {
         if (null == selectedColor) {
             selectedColor = new ObjectPropertyBase<Color>(_selectedColor) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() { requestResize(); }
                 @Override public Object getBean() { return NSwitch.this; }
                 @Override public String getName() { return "selectedColor"; }
             };
@@ -240,7 +208,7 @@ public class NSwitch extends Region {
     public void setFont(final Font font) {
         if (null == this.font) {
             _font = font;
-            redraw();
+            requestResize();
         } else {
             this.font.set(font);
         }
@@ -248,7 +216,7 @@ public class NSwitch extends Region {
     public ObjectProperty<Font> fontProperty() {
         if (null == font) {
             font = new ObjectPropertyBase<Font>(_font) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() { requestResize(); }
                 @Override public Object getBean() { return NSwitch.this; }
                 @Override public String getName() { return "font"; }
             };
@@ -260,13 +228,13 @@ public class NSwitch extends Region {
     public ContentDisplay getContentDisplay() { return contentDisplay; }
     public void setContentDisplay(final ContentDisplay contentDisplay) {
         this.contentDisplay = contentDisplay;
-        resize();
+        requestResize();
     }
 
-    public NShape getNShape() { return nShape; }
+    @Override public NShape getNShape() { return nShape; }
     public void setNShape(final NShape nShape) {
         this.nShape = nShape;
-        resize();
+        requestResize();
     }
 
     public boolean isOn() { return on.get(); }
@@ -276,7 +244,7 @@ public class NSwitch extends Region {
     public NSwitchStyle getSwitchStyle() { return switchStyle; }
     public void setSwitchStyle(final NSwitchStyle switchStyle) {
         this.switchStyle = switchStyle;
-        redraw();
+        requestResize();
     }
 
     public EventHandler<NEvent> getOnSwitch() { return onSwitch.get(); }
@@ -290,11 +258,13 @@ public class NSwitch extends Region {
 
     // ******************** Layout ********************************************
     @Override public void layoutChildren() {
+        final long start = RenderMetrics.start(this);
         super.layoutChildren();
-        redraw();
+        requestRedraw();
+        RenderMetrics.record(this, Phase.LAYOUT, start);
     }
 
-    protected void resize() {
+    @Override protected void resize() {
         width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
         height = Helper.clamp(getFont().getSize() * 2, Double.MAX_VALUE, getHeight() - getInsets().getTop() - getInsets().getBottom());
         size   = width < height ? width : height;
@@ -309,8 +279,6 @@ public class NSwitch extends Region {
 
                     canvas.setWidth(width);
                     canvas.setHeight(height);
-
-                    cornerRadius = Helper.clamp(1, 10, 0.1 * size);
                     break;
                 case PILL:
                     pane.setMinSize(width, height);
@@ -320,8 +288,6 @@ public class NSwitch extends Region {
 
                     canvas.setWidth(width);
                     canvas.setHeight(height);
-
-                    cornerRadius = Helper.clamp(1, size, size / 1.25);
                     break;
                 case CIRCULAR:
                     pane.setMinSize(width, height);
@@ -331,83 +297,68 @@ public class NSwitch extends Region {
 
                     canvas.setWidth(size);
                     canvas.setHeight(size);
-
-                    cornerRadius = size < 1 ? 1 : size;
                     break;
             }
 
-            shadowRadius = Helper.clamp(2, 6, 0.12 * size);
-            shadowOffset = Helper.clamp(2, 6, 0.04 * size);
-
-            outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            cornerRadius = ControlGeometry.getCornerRadius(nShape, size);
+            deriveShadow();
 
-            innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            glowColor   = ControlGeometry.getGlowColor(getBackgroundColor(), getSelectedColor());
+            glowRadius  = ControlGeometry.getGlowRadius(size);
+            glowEnabled = getLevelOfDetail().isEffectsEnabled();
 
-            Color glowColor = Helper.isBright(getBackgroundColor()) ? Helper.getColorWithOpacity(getSelectedColor(), 0.25) : getSelectedColor();
-            glowRadius = Helper.clamp(4, 8, size * 0.2);
-            glow       = new DropShadow(BlurType.TWO_PASS_BOX, glowColor, glowRadius, 0.0, 0, 0);
+            backgroundSprite = null;
+            knobSprite       = null;
+            onTextSprite     = null;
+            offTextSprite    = null;
 
             redraw();
         }
     }
 
-    protected void redraw() {
+    @Override protected void redraw() {
         ctx.clearRect(0, 0, width, height);
-        double  shadowRadiusX2 = 2 * shadowRadius;
-        ctx.save();
-        ctx.setEffect(outerShadow);
-        ctx.setFill(getBackgroundColor());
-        switch (nShape) {
-            case RECTANGULAR:
-            case PILL       :
-            default         : ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, cornerRadius, cornerRadius); break;
+        if (width <= 0 || height <= 0) { return; }
+        if (null == backgroundSprite) {
+            backgroundSprite = createSprite(nShape, width, height, shadowRadius, cornerRadius, getBackgroundColor(), NStyle.EMBOSSED);
         }
-        ctx.restore();
+        backgroundSprite.draw(ctx, 0, 0);
 
-        // Draw on / off
+        // Draw on / off, the knob and the glowing text are cached sprites so that sliding the knob doesn't apply any effect
         double  innerButtonWidth = (width / 2) - shadowRadius;
         double  innerOffset      = shadowRadius + 2;
         double  innerRadius      = cornerRadius * 0.8;
         boolean isOn             = isOn();
-        ctx.save();
-        ctx.setFill(getBackgroundColor());
-        InnerShadow shadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset / 2, -shadowOffset / 2);
-        shadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset / 2, shadowOffset / 2));
-        ctx.setEffect(shadow);
+        double  knobX            = width - innerOffset - innerButtonWidth + (2 * innerOffset + innerButtonWidth - width) * knob.getValue();
+        if (null == knobSprite) {
+            knobSprite = createSprite(NShape.RECTANGULAR, innerButtonWidth, height - 2 * shadowRadius - 4, 0, innerRadius, getBackgroundColor(), NStyle.SUNKEN, shadowOffset / 2, darkShadowColor);
+        }
+        knobSprite.draw(ctx, knobX, innerOffset);
+
+        String onText  = NSwitchStyle.TEXT == switchStyle ? "ON" : "1";
+        String offText = NSwitchStyle.TEXT == switchStyle ? "OFF" : "0";
+        double onX     = innerOffset + innerButtonWidth * 0.5;
+        double offX    = width - innerOffset - innerButtonWidth * 0.5;
+        ctx.setFont(getFont());
+        ctx.setFill(getTextColor());
         if (isOn) {
-            switch (nShape) {
-                case RECTANGULAR:
-                case PILL       :
-                default         : ctx.fillRoundRect(innerOffset, innerOffset, innerButtonWidth, height - shadowRadiusX2 - 4, innerRadius, innerRadius);
-            }
+            if (null == onTextSprite && glowEnabled) { onTextSprite = createTextSprite(onText, getFont(), getSelectedColor(), innerButtonWidth, height, glowRadius, glowColor); }
+            drawSelectedText(onTextSprite, onText, onX + OFFSET, innerButtonWidth);
+            ctx.fillText(offText, offX, height * 0.5, innerButtonWidth);
         } else {
-            switch (nShape) {
-                case RECTANGULAR:
-                case PILL       :
-                default         : ctx.fillRoundRect(width - innerOffset - innerButtonWidth, innerOffset, innerButtonWidth, height - shadowRadiusX2 - 4, innerRadius, innerRadius);
-            }
+            if (null == offTextSprite && glowEnabled) { offTextSprite = createTextSprite(offText, getFont(), getSelectedColor(), innerButtonWidth, height, glowRadius, glowColor); }
+            ctx.fillText(onText, onX, height * 0.5, innerButtonWidth);
+            drawSelectedText(offTextSprite, offText, offX + OFFSET, innerButtonWidth);
         }
-        ctx.restore();
-        ctx.save();
-        double offset;
-        ctx.setFill(getTextColor());
-        ctx.setFont(getFont());
-        switch (nShape) {
-            case RECTANGULAR:
-            case PILL:
-            default:
-                offset = isOn ? OFFSET : 0;
-                ctx.setFill(isOn ? getSelectedColor() : getTextColor());
-                ctx.setEffect(isOn ? glow : null);
-                ctx.fillText(NSwitchStyle.TEXT == switchStyle ? "ON" : "1", innerOffset + innerButtonWidth * 0.5 + offset, height * 0.5 + offset, innerButtonWidth);
-                offset = isOn ? 0 : OFFSET;
-                ctx.setEffect(isOn ? null : glow);
-                ctx.setFill(isOn ? getTextColor() : getSelectedColor());
-                ctx.fillText(NSwitchStyle.TEXT == switchStyle ? "OFF" : "0", width - innerOffset - innerButtonWidth * 0.5 + offset, height * 0.5 + offset, innerButtonWidth);
-                break;
+    }
+
+    private void drawSelectedText(final Sprite sprite, final String text, final double x, final double maxWidth) {
+        if (null == sprite) {
+            ctx.setFill(getSelectedColor());
+            ctx.fillText(text, x, height * 0.5 + OFFSET, maxWidth);
+            ctx.setFill(getTextColor());
+        } else {
+            sprite.draw(ctx, x - sprite.getWidth() * 0.5, (height - sprite.getHeight()) * 0.5 + OFFSET);
         }
-        ctx.restore();
     }
 }
@@ -16,68 +16,88 @@
 
 package eu.hansolo.fx.neumorphic;
 
+import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
 import eu.hansolo.fx.neumorphic.tools.Helper;
 import eu.hansolo.fx.neumorphic.tools.NShape;
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.NTheme;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.beans.DefaultProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ObjectPropertyBase;
+import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.property.StringPropertyBase;
 import javafx.collections.ObservableList;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ContentDisplay;
 import javafx.scene.control.Control;
+import javafx.scene.control.Skin;
 import javafx.scene.control.TextField;
-import javafx.scene.effect.BlurType;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.InnerShadow;
 import javafx.scene.layout.Pane;
-import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 
 @DefaultProperty("children")
-public class NTextField extends Region {
+public class NTextField extends NControl<NTextField> {
     private static final double                PREFERRED_WIDTH  = 120;
     private static final double                PREFERRED_HEIGHT = 24;
     private static final double                MINIMUM_WIDTH    = 10;
     private static final double                MINIMUM_HEIGHT   = 10;
     private static final double                MAXIMUM_WIDTH    = 1024;
     private static final double                MAXIMUM_HEIGHT   = 1024;
+    public  static final Duration              DEFAULT_VALIDATION_DELAY = Duration.millis(250);
+    private static final ExecutorService       DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "NTextFieldValidation");
+        thread.setDaemon(true);
+        return thread;
+    });
     private static       String                userAgentStyleSheet;
-    private              double                size;
-    private              double                width;
-    private              double                height;
     private              NShape                nShape;
     private              double                textFieldWidth;
     private              double                textFieldHeight;
     private              TextField             textField;
+    private              NTextFieldSkin        skin;
     private              Pane                  pane;
-    private              Canvas                canvas;
-    private              GraphicsContext       ctx;
     private              String                _text;
-    private              Color                 _backgroundColor;
-    private              ObjectProperty<Color> backgroundColor;
     private              Color                 _textBackgroundColor;
     private              Color                 _textColor;
     private              ObjectProperty<Color> textColor;
     private              Color                 _selectedColor;
     private              ObjectProperty<Color> selectedColor;
-    private              Color                 brightShadowColor;
-    private              Color                 darkShadowColor;
     private              ContentDisplay        contentDisplay;
     private              double                cornerRadius;
-    private              double                shadowRadius;
-    private              double                shadowOffset;
-    private              DropShadow            outerShadow;
-    private              InnerShadow           innerShadow;
+    private              Sprite                sprite;
+    private              Sprite                invalidSprite;
+    private              Color                 invalidColor;
+    private              BooleanProperty       valid;
+    private              String                formattedText;
+    private              String                validatedText;
+    private              List<ValidationStage> stages;
+    private              Executor              executor;
+    private              PauseTransition       validationDelay;
+    private        final AtomicInteger         validationGeneration = new AtomicInteger();
 
 
     // ******************** Constructors **************************************
@@ -87,20 +107,21 @@ public class NTextField extends Region {
     public NTextField(final String text) {
         nShape               = NShape.PILL;
         _text                = text;
-        _backgroundColor     = Color.web("#e2e6e8");
-        _textBackgroundColor = Helper.derive(_backgroundColor, Helper.isBright(_backgroundColor) ? 0.99 : 1.2);
-        _textColor           = Color.web("#6c737c");
-        _selectedColor       = Color.web("#236dee");
-        brightShadowColor    = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 1.1), 0.5);
-        darkShadowColor      = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 0.9), 0.5);
+        _textBackgroundColor = NTheme.DEFAULT.getPalette().getTextBackgroundColor();
+        _textColor           = NTheme.DEFAULT.getTextColor();
+        _selectedColor       = NTheme.DEFAULT.getSelectedColor();
         contentDisplay       = ContentDisplay.LEFT;
         cornerRadius         = 5;
-        shadowRadius         = 6;
-        shadowOffset         = 2;
-        outerShadow          = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-        innerShadow          = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+        invalidColor         = Color.web("#ee2336");
+        stages               = new ArrayList<>();
+        executor             = DEFAULT_EXECUTOR;
+        formattedText        = text;
+        validatedText        = text;
+        valid                = new BooleanPropertyBase(true) {
+            @Override protected void invalidated() { requestRedraw(); }
+            @Override public Object getBean() { return NTextField.this; }
+            @Override public String getName() { return "valid"; }
+        };
         initGraphics();
         registerListeners();
     }
@@ -122,10 +143,16 @@ public class NTextField extends Region {
         ctx.setTextAlign(TextAlignment.CENTER);
         ctx.setTextBaseline(VPos.CENTER);
 
-        textField = new TextField(_text);
+        textField = new TextField(_text) {
+            @Override protected Skin<?> createDefaultSkin() {
+                skin = new NTextFieldSkin(this, NTextField.this);
+                return skin;
+            }
+        };
         textField.setFont(Font.font(10));
-        textField.setStyle("-fx-highlight-fill: #236dee;");
-        textField.setStyle("-fx-text-fill: " + Helper.colorToCss(_textColor));
+
+        validationDelay = new PauseTransition(DEFAULT_VALIDATION_DELAY);
+        validationDelay.setOnFinished(e -> validate());
 
         pane = new Pane(canvas, textField);
 
@@ -133,8 +160,23 @@ public class NTextField extends Region {
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
+        widthProperty().addListener(o -> requestResize());
+        heightProperty().addListener(o -> requestResize());
+        textField.textProperty().addListener(o -> {
+            if (stages.isEmpty()) { return; }
+            // Stale runs will be dropped as soon as the text changes
+            validationGeneration.incrementAndGet();
+            validationDelay.playFromStart();
+        });
+        textField.focusedProperty().addListener((o, ov, nv) -> {
+            if (nv || stages.isEmpty()) { return; }
+            if (Objects.equals(validatedText, getText())) {
+                applyFormattedText();
+            } else {
+                // The result of the last run belongs to an older text, the new run applies its result when it's done
+                validate();
+            }
+        });
     }
 
 
@@ -152,43 +194,18 @@ public class NTextField extends Region {
     public void setText(final String text) { textField.setText(text); }
     public StringProperty textProperty() { return textField.textProperty(); }
 
-    public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
-    public void setBackgroundColor(final Color backgroundColor) {
-        if (null == this.backgroundColor) {
-            boolean isBright     = Helper.isBright(backgroundColor);
-            _backgroundColor     = backgroundColor;
-            _textBackgroundColor = Helper.derive(_backgroundColor, Helper.isBright(_backgroundColor) ? 0.99 : 1.2);
-            brightShadowColor    = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-            darkShadowColor      = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-            resize();
-        } else {
-            this.backgroundColor.set(backgroundColor);
-        }
-    }
-    public ObjectProperty<Color> backgroundColorProperty() {
-        if (null == backgroundColor) {
-            backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
-                @Override protected void invalidated() {
-                    boolean isBright     = Helper.isBright(get());
-                    _textBackgroundColor = Helper.derive(get(), isBright ? 0.99 : 1.2);
-                    brightShadowColor    = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-                    darkShadowColor      = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-                    resize();
-                }
-                @Override public Object getBean() { return NTextField.this; }
-                @Override public String getName() { return "backgroundColor"; }
-            };
-            _backgroundColor = null;
-        }
-        return backgroundColor;
+    @Override protected void applyTheme(final NTheme theme) {
+        super.applyTheme(theme);
+        setTextColor(theme.getTextColor());
+        setSelectedColor(theme.getSelectedColor());
     }
 
     public Color getTextColor() { return null == textColor ? _textColor : textColor.get(); }
     public void setTextColor(final Color textColor) {
         if (null == this.textColor) {
             _textColor = textColor;
-            textField.setStyle("-fx-text-fill: " + Helper.colorToCss(_textColor));
-            redraw();
+            if (null != skin) { skin.updateTextColor(); }
+            requestRedraw();
         } else {
             this.textColor.set(textColor);
         }
@@ -197,8 +214,8 @@ public class NTextField extends Region {
         if (null == textColor) {
             textColor = new ObjectPropertyBase<>(_textColor) {
                 @Override protected void invalidated() {
-                    textField.setStyle("-fx-text-inner-color: " + Helper.colorToCss(get()));
-                    redraw();
+                    if (null != skin) { skin.updateTextColor(); }
+                    requestRedraw();
                 }
                 @Override public Object getBean() { return NTextField.this; }
                 @Override public String getName() { return "textColor"; }
@@ -212,8 +229,8 @@ public class NTextField extends Region {
     public void setSelectedColor(final Color selectedColor) {
         if (null == this.selectedColor) {
             _selectedColor = selectedColor;
-            textField.setStyle("-fx-highlight-fill: " + Helper.colorToCss(_selectedColor));
-            redraw();
+            if (null != skin) { skin.updateSelectedColor(); }
+            requestRedraw();
         } else {
             this.selectedColor.set(selectedColor);
         }
@@ -222,8 +239,8 @@ public class NTextField extends Region {
         if (null == selectedColor) {
             selectedColor = new ObjectPropertyBase<>(_selectedColor) {
                 @Override protected void invalidated() {
-                    textField.setStyle("-fx-highlight-fill: " + Helper.colorToCss(get()));
-                    redraw();
+                    if (null != skin) { skin.updateSelectedColor(); }
+                    requestRedraw();
                 }
                 @Override public Object getBean() { return NTextField.this; }
                 @Override public String getName() { return "selectedColor"; }
@@ -240,15 +257,125 @@ public class NTextField extends Region {
     public ContentDisplay getContentDisplay() { return contentDisplay; }
     public void setContentDisplay(final ContentDisplay contentDisplay) {
         this.contentDisplay = contentDisplay;
-        resize();
+        requestResize();
     }
 
     public TextField getEditor() { return textField; }
 
-    public NShape getNShape() { return nShape; }
+    /**
+     * Adds a formatting stage to the validation pipeline. The stages of the
+     * pipeline are applied in the order they were added on a background thread,
+     * each stage gets the result of the former formatting stage. The formatted
+     * text will be set when the text field loses the focus and the text is valid.
+     * @param formatter function that returns the formatted text
+     */
+    public void addFormatter(final Function<String, String> formatter) {
+        stages.add(new ValidationStage(formatter, null));
+        validate();
+    }
+
+    /**
+     * Adds a validation stage to the validation pipeline. Validators will be
+     * called on a background thread, the pipeline stops at the first validator
+     * that rejects the (formatted) text.
+     * @param validator predicate that returns true if the text is valid
+     */
+    public void addValidator(final Predicate<String> validator) {
+        stages.add(new ValidationStage(null, validator));
+        validate();
+    }
+
+    public void clearValidation() {
+        stages.clear();
+        validationGeneration.incrementAndGet();
+        validationDelay.stop();
+        formattedText = getText();
+        validatedText = formattedText;
+        setValid(true);
+    }
+
+    /**
+     * Runs the validation pipeline on the current text. This will be called
+     * automatically after the text did not change for the validation delay.
+     */
+    public void validate() {
+        validationDelay.stop();
+        final int                   generation = validationGeneration.incrementAndGet();
+        final String                text       = getText();
+        final List<ValidationStage> pipeline   = List.copyOf(stages);
+        if (pipeline.isEmpty()) {
+            formattedText = text;
+            validatedText = text;
+            setValid(true);
+            return;
+        }
+        executor.execute(() -> {
+            String  result  = text;
+            boolean isValid = true;
+            try {
+                for (ValidationStage stage : pipeline) {
+                    if (generation != validationGeneration.get()) { return; }
+                    if (null != stage.formatter) {
+                        result = stage.formatter.apply(result);
+                    } else if (!stage.validator.test(result)) {
+                        isValid = false;
+                        break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // A stage that fails marks the text as invalid
+                isValid = false;
+            }
+            final String  formatted   = result;
+            final boolean isValidText = isValid;
+            Platform.runLater(() -> {
+                if (generation != validationGeneration.get()) { return; }
+                formattedText = formatted;
+                validatedText = text;
+                setValid(isValidText);
+                if (!textField.isFocused()) { applyFormattedText(); }
+            });
+        });
+    }
+
+    private void applyFormattedText() {
+        if (!isValid() || null == formattedText || !Objects.equals(validatedText, getText()) || formattedText.equals(getText())) { return; }
+        textField.setText(formattedText);
+    }
+
+    /**
+     * @return true if the last run of the validation pipeline accepted the text
+     */
+    public boolean isValid() { return valid.get(); }
+    private void setValid(final boolean valid) { this.valid.set(valid); }
+    public ReadOnlyBooleanProperty validProperty() { return valid; }
+
+    /**
+     * @return the text after all formatting stages of the last validation run
+     */
+    public String getFormattedText() { return formattedText; }
+
+    public Color getInvalidColor() { return invalidColor; }
+    public void setInvalidColor(final Color invalidColor) {
+        this.invalidColor = invalidColor;
+        invalidSprite     = null;
+        requestRedraw();
+    }
+
+    public Duration getValidationDelay() { return validationDelay.getDuration(); }
+    public void setValidationDelay(final Duration validationDelay) { this.validationDelay.setDuration(validationDelay); }
+
+    public Executor getExecutor() { return executor; }
+    /**
+     * Defines the executor that is used to run the validation pipeline.
+     * @param executor the executor, null will use a shared pool of daemon threads
+     */
+    public void setExecutor(final Executor executor) { this.executor = null == executor ? DEFAULT_EXECUTOR : executor; }
+
+    @Override public NShape getNShape() { return nShape; }
     public void setNShape(final NShape nShape) {
         this.nShape = nShape;
-        resize();
+        requestResize();
     }
 
     @Override public String getUserAgentStylesheet() {
@@ -259,6 +386,7 @@ public class NTextField extends Region {
 
     // ******************** Layout ********************************************
     @Override public void layoutChildren() {
+        final long start = RenderMetrics.start(this);
         super.layoutChildren();
 
         textFieldWidth  = textField.getLayoutBounds().getWidth();
@@ -266,10 +394,16 @@ public class NTextField extends Region {
         double w  = width;
         double h  = height;
         textField.relocate((w - textFieldWidth) * 0.5, (h - textFieldHeight) * 0.5);
-        resize();
+        requestResize();
+        RenderMetrics.record(this, Phase.LAYOUT, start);
+    }
+
+    @Override protected void updateColors(final NTheme.Palette palette) {
+        super.updateColors(palette);
+        _textBackgroundColor = palette.getTextBackgroundColor();
     }
 
-    protected void resize() {
+    @Override protected void resize() {
         width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
         height = Helper.clamp(textField.getHeight(), Double.MAX_VALUE, getHeight() - getInsets().getTop() - getInsets().getBottom());
         size   = width < height ? width : height;
@@ -287,33 +421,49 @@ public class NTextField extends Region {
 
             switch(nShape) {
                 case RECTANGULAR:
-                    cornerRadius = Helper.clamp(1, 10, 0.1 * size);
+                    cornerRadius = ControlGeometry.getCornerRadius(NShape.RECTANGULAR, size);
                     break;
                 case PILL:
                 default:
-                    cornerRadius = Helper.clamp(1, size, size / 1.25);
+                    cornerRadius = ControlGeometry.getCornerRadius(NShape.PILL, size);
                     break;
             }
 
-            shadowRadius = Helper.clamp(2, 6, 0.12 * size);
-            shadowOffset = Helper.clamp(2, 6, 0.04 * size);
+            deriveShadow();
 
-            outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-
-            innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            sprite        = null;
+            invalidSprite = null;
 
             redraw();
         }
     }
 
-    protected void redraw() {
+    @Override protected void redraw() {
         ctx.clearRect(0, 0, width, height);
-        ctx.save();
-        ctx.setEffect(innerShadow);
-        ctx.setFill(_textBackgroundColor);
-        ctx.fillRoundRect(0, 0, width, height, size, size);
-        ctx.restore();
+        if (width <= 0 || height <= 0) { return; }
+        if (isValid()) {
+            if (null == sprite) { sprite = createSprite(darkShadowColor); }
+            sprite.draw(ctx, 0, 0);
+        } else {
+            if (null == invalidSprite) { invalidSprite = createSprite(Helper.getColorWithOpacity(invalidColor, darkShadowColor.getOpacity())); }
+            invalidSprite.draw(ctx, 0, 0);
+        }
+    }
+
+    private Sprite createSprite(final Color darkShadowColor) {
+        return createSprite(NShape.RECTANGULAR, width, height, 0, size, _textBackgroundColor, NStyle.SUNKEN, darkShadowColor);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static class ValidationStage {
+        private final Function<String, String> formatter;
+        private final Predicate<String>        validator;
+
+
+        ValidationStage(final Function<String, String> formatter, final Predicate<String> validator) {
+            this.formatter = formatter;
+            this.validator = validator;
+        }
     }
 }
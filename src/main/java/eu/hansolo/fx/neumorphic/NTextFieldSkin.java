@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import javafx.scene.control.TextField;
+import javafx.scene.control.skin.TextFieldSkin;
+
+
+/**
+ * Skin of the TextField inside a NTextField that sets the text and highlight
+ * fill directly on the skin properties instead of using inline styles, so a
+ * color change does not trigger a new CSS pass on the TextField.
+ */
+class NTextFieldSkin extends TextFieldSkin {
+    private final NTextField nTextField;
+
+
+    // ******************** Constructors **************************************
+    NTextFieldSkin(final TextField textField, final NTextField nTextField) {
+        super(textField);
+        this.nTextField = nTextField;
+        updateTextColor();
+        updateSelectedColor();
+    }
+
+
+    // ******************** Methods *******************************************
+    void updateTextColor() { setTextFill(nTextField.getTextColor()); }
+
+    void updateSelectedColor() { setHighlightFill(nTextField.getSelectedColor()); }
+}
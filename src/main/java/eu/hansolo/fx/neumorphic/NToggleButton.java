@@ -16,8 +16,17 @@
 
 package eu.hansolo.fx.neumorphic;
 
+import eu.hansolo.fx.neumorphic.tools.ControlGeometry;
 import eu.hansolo.fx.neumorphic.tools.NShape;
 import eu.hansolo.fx.neumorphic.tools.Helper;
+import eu.hansolo.fx.neumorphic.tools.LevelOfDetail;
+import eu.hansolo.fx.neumorphic.tools.NStyle;
+import eu.hansolo.fx.neumorphic.tools.NTheme;
+import eu.hansolo.fx.neumorphic.tools.SpriteCache.Sprite;
+import eu.hansolo.fx.neumorphic.tools.StateAnimation;
+import eu.hansolo.fx.neumorphic.tools.RenderEvents;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics;
+import eu.hansolo.fx.neumorphic.tools.RenderMetrics.Phase;
 import javafx.beans.DefaultProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
@@ -30,23 +39,20 @@ import javafx.event.ActionEvent;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ContentDisplay;
 import javafx.scene.control.Control;
 import javafx.scene.control.Toggle;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.effect.BlurType;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.InnerShadow;
 import javafx.scene.layout.Pane;
-import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
 
 
 @DefaultProperty("children")
-public class NToggleButton extends Region implements Toggle {
+public class NToggleButton extends NControl<NToggleButton> implements Toggle {
     private static final double                      PREFERRED_WIDTH  = 24;
     private static final double                      PREFERRED_HEIGHT = 24;
     private static final double                      MINIMUM_WIDTH    = 10;
@@ -54,19 +60,12 @@ public class NToggleButton extends Region implements Toggle {
     private static final double                      MAXIMUM_WIDTH    = 1024;
     private static final double                      MAXIMUM_HEIGHT   = 1024;
     private static final double                      OFFSET           = 0.5;
-    private              double                      size;
-    private              double                      width;
-    private              double                      height;
     private              NShape                      nShape;
     private              Node                        graphics;
     private              Pane                        pane;
-    private              Canvas                      canvas;
-    private              GraphicsContext             ctx;
     private              String                      _text;
     private              StringProperty              text;
     private              ObjectProperty<ToggleGroup> toggleGroup;
-    private              Color                       _backgroundColor;
-    private              ObjectProperty<Color>       backgroundColor;
     private              Color                       _textColor;
     private              ObjectProperty<Color>       textColor;
     private              Color                       _selectedColor;
@@ -74,18 +73,19 @@ public class NToggleButton extends Region implements Toggle {
     private              Font                        _font;
     private              ObjectProperty<Font>        font;
     private              Color                       pressedColor;
-    private              Color                       brightShadowColor;
-    private              Color                       darkShadowColor;
     private              ContentDisplay              contentDisplay;
     private              BooleanProperty             pressed;
     private              BooleanProperty             selected;
     private              double                      cornerRadius;
-    private              double                      shadowRadius;
-    private              double                      shadowOffset;
     private              double                      glowRadius;
-    private              DropShadow                  outerShadow;
-    private              InnerShadow                 innerShadow;
+    private              Color                       glowColor;
     private              DropShadow                  glow;
+    private              Sprite                      embossedSprite;
+    private              Sprite                      pressedSprite;
+    private              Sprite                      sunkenSprite;
+    private              Sprite                      textSprite;
+    private              StateAnimation              pressAnimation;
+    private              StateAnimation              selectAnimation;
 
 
     // ******************** Constructors **************************************
@@ -111,21 +111,25 @@ public class NToggleButton extends Region implements Toggle {
         };
         graphics          = null;
         _text             = text;
-        _backgroundColor  = Color.web("#e2e6e8");
-        _textColor        = Color.web("#6c737c");
-        _selectedColor    = Color.web("#236dee");
+        _textColor        = NTheme.DEFAULT.getTextColor();
+        _selectedColor    = NTheme.DEFAULT.getSelectedColor();
         _font             = Font.font(10);
-        pressedColor      = Helper.derive(_backgroundColor, Helper.isBright(_backgroundColor) ? 1.0125 : 1.05);
-        brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 1.1), 0.5);
-        darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, 0.9), 0.5);
+        pressedColor      = NTheme.DEFAULT.getPalette().getPressedColor();
         contentDisplay    = ContentDisplay.LEFT;
+        pressAnimation    = new StateAnimation(this, this::requestRedraw);
+        selectAnimation   = new StateAnimation(this, this::requestRedraw);
         pressed           = new BooleanPropertyBase(false) {
-            @Override protected void invalidated() { layoutChildren(); }
+            @Override protected void invalidated() {
+                RenderEvents.stateChanged(this);
+                pressAnimation.animateTo(get() ? 1 : 0);
+                layoutChildren();
+            }
             @Override public Object getBean() { return NToggleButton.this; }
             @Override public String getName() { return "pressed"; }
         };
         selected          = new BooleanPropertyBase(false) {
             @Override protected void invalidated() {
+                RenderEvents.stateChanged(this);
                 final boolean selected = get();
                 final ToggleGroup toggleGroup = getToggleGroup();
                 if (toggleGroup != null) {
@@ -136,20 +140,15 @@ public class NToggleButton extends Region implements Toggle {
                         toggleGroup.selectToggle(null);
                     }
                 }
+                selectAnimation.animateTo(selected ? 1 : 0);
                 layoutChildren();
             }
             @Override public Object getBean() { return NToggleButton.this; }
             @Override public String getName() { return "selected"; }
         };
         cornerRadius      = 5;
-        shadowRadius      = 6;
-        shadowOffset      = 2;
         glowRadius        = 10;
-        outerShadow       = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-        glow              = new DropShadow(BlurType.TWO_PASS_BOX, _selectedColor, glowRadius, 0.5, 0, 0);
-        innerShadow       = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-        innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+        glow              = new DropShadow(BlurType.TWO_PASS_BOX, _selectedColor, glowRadius, 0.0, 0, 0);
         initGraphics();
         registerListeners();
     }
@@ -177,8 +176,8 @@ public class NToggleButton extends Region implements Toggle {
     }
 
     private void registerListeners() {
-        widthProperty().addListener(o -> resize());
-        heightProperty().addListener(o -> resize());
+        widthProperty().addListener(o -> requestResize());
+        heightProperty().addListener(o -> requestResize());
         canvas.setOnMousePressed(e -> selected.set(selected.get() ? false : true));
     }
 
@@ -196,8 +195,9 @@ public class NToggleButton extends Region implements Toggle {
     public String getText() { return null == text ? _text : text.get(); }
     public void setText(final String text) {
         if (null == this.text) {
-            _text = text;
-            redraw();
+            _text      = text;
+            textSprite = null;
+            requestRedraw();
         } else {
             this.text.set(text);
         }
@@ -205,7 +205,10 @@ public class NToggleButton extends Region implements Toggle {
     public StringProperty textProperty() {
         if (null == text) {
             text = new StringPropertyBase(_text) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() {
+                    textSprite = null;
+                    requestRedraw();
+                }
                 @Override public Object getBean() { return NToggleButton.this; }
                 @Override public String getName() { return "text"; }
             };
@@ -214,42 +217,17 @@ public class NToggleButton extends Region implements Toggle {
         return text;
     }
 
-    public Color getBackgroundColor() { return null == backgroundColor ? _backgroundColor : backgroundColor.get(); }
-    public void setBackgroundColor(final Color backgroundColor) {
-        if (null == this.backgroundColor) {
-            boolean isBright  = Helper.isBright(backgroundColor);
-            _backgroundColor  = backgroundColor;
-            pressedColor      = Helper.derive(_backgroundColor, isBright ? 1.0125 : 1.05);
-            brightShadowColor = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-            darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(_backgroundColor, isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-            resize();
-        } else {
-            this.backgroundColor.set(backgroundColor);
-        }
-    }
-    public ObjectProperty<Color> backgroundColorProperty() {
-        if (null == backgroundColor) {
-            backgroundColor = new ObjectPropertyBase<>(_backgroundColor) {
-                @Override protected void invalidated() {
-                    boolean isBright  = Helper.isBright(get());
-                    pressedColor      = Helper.derive(get(), isBright ? 1.0125 : 1.05);
-                    brightShadowColor = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 1.1 : 1.3), isBright ? 0.5 : 1.0);
-                    darkShadowColor   = Helper.getColorWithOpacity(Helper.derive(get(), isBright ? 0.9 : 0.7), isBright ? 0.5 : 1.0);
-                    resize();
-                }
-                @Override public Object getBean() { return NToggleButton.this; }
-                @Override public String getName() { return "backgroundColor"; }
-            };
-            _backgroundColor = null;
-        }
-        return backgroundColor;
+    @Override protected void applyTheme(final NTheme theme) {
+        super.applyTheme(theme);
+        setTextColor(theme.getTextColor());
+        setSelectedColor(theme.getSelectedColor());
     }
 
     public Color getTextColor() { return null == textColor ? _textColor : textColor.get(); }
     public void setTextColor(final Color textColor) {
         if (null == this.textColor) {
             _textColor = textColor;
-            redraw();
+            requestRedraw();
         } else {
             this.textColor.set(textColor);
         }
@@ -257,7 +235,7 @@ public class NToggleButton extends Region implements Toggle {
     public ObjectProperty<Color> textColorProperty() {
         if (null == textColor) {
             textColor = new ObjectPropertyBase<Color>(_textColor) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() { requestRedraw(); }
                 @Override public Object getBean() { return NToggleButton.this; }
                 @Override public String getName() { return "textColor"; }
             };
@@ -270,7 +248,7 @@ public class NToggleButton extends Region implements Toggle {
     public void setSelectedColor(final Color selectedColor) {
         if (null == this.selectedColor) {
             _selectedColor = selectedColor;
-            redraw();
+            requestResize();
         } else {
             this.selectedColor.set(selectedColor);
         }
@@ -278,7 +256,7 @@ public class NToggleButton extends Region implements Toggle {
     public ObjectProperty<Color> selectedColorProperty() {
         if (null == selectedColor) {
             selectedColor = new ObjectPropertyBase<Color>(_selectedColor) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() { requestResize(); }
                 @Override public Object getBean() { return NToggleButton.this; }
                 @Override public String getName() { return "selectedColor"; }
             };
@@ -291,7 +269,7 @@ public class NToggleButton extends Region implements Toggle {
     public void setFont(final Font font) {
         if (null == this.font) {
             _font = font;
-            redraw();
+            requestResize();
         } else {
             this.font.set(font);
         }
@@ -299,7 +277,7 @@ public class NToggleButton extends Region implements Toggle {
     public ObjectProperty<Font> fontProperty() {
         if (null == font) {
             font = new ObjectPropertyBase<Font>(_font) {
-                @Override protected void invalidated() { redraw(); }
+                @Override protected void invalidated() { requestResize(); }
                 @Override public Object getBean() { return NToggleButton.this; }
                 @Override public String getName() { return "font"; }
             };
@@ -311,20 +289,20 @@ public class NToggleButton extends Region implements Toggle {
     public ContentDisplay getContentDisplay() { return contentDisplay; }
     public void setContentDisplay(final ContentDisplay contentDisplay) {
         this.contentDisplay = contentDisplay;
-        resize();
+        requestResize();
     }
 
     public boolean isSelected() { return selected.get(); }
     public void setSelected(final boolean selected) { this.selected.set(selected); }
     public BooleanProperty selectedProperty() { return selected; }
 
-    public NShape getNShape() { return nShape; }
+    @Override public NShape getNShape() { return nShape; }
     public void setNShape(final NShape nShape) {
         switch(nShape) {
             case CIRCULAR: this.nShape = NShape.PILL; break;
             default      : this.nShape = nShape; break;
         }
-        resize();
+        requestResize();
     }
 
     public void setGraphics(final Node graphics) {
@@ -343,7 +321,7 @@ public class NToggleButton extends Region implements Toggle {
             getChildren().add(this.graphics);
             Helper.enableNode(this.graphics, true);
         }
-        resize();
+        requestResize();
     }
 
     public final ToggleGroup getToggleGroup() { return null == toggleGroup ? null : toggleGroup.get(); }
@@ -360,10 +338,10 @@ public class NToggleButton extends Region implements Toggle {
 
     // ******************** Layout ********************************************
     @Override public void layoutChildren() {
+        final long start = RenderMetrics.start(this);
         super.layoutChildren();
         if (null == this.graphics) {
-            redraw();
-            return;
+            requestRedraw();
         } else {
             graphics.setEffect(selected.get() ? glow : null);
             double gW     = this.graphics.getLayoutBounds().getWidth();
@@ -390,11 +368,17 @@ public class NToggleButton extends Region implements Toggle {
                     graphics.relocate((w - gW) * 0.5 + offset, (h - gH) * 0.5 + offset);
                     break;
             }
-            redraw();
+            requestRedraw();
         }
+        RenderMetrics.record(this, Phase.LAYOUT, start);
     }
 
-    protected void resize() {
+    @Override protected void updateColors(final NTheme.Palette palette) {
+        super.updateColors(palette);
+        pressedColor = palette.getPressedColor();
+    }
+
+    @Override protected void resize() {
         width  = getWidth() - getInsets().getLeft() - getInsets().getRight();
         height = Helper.clamp(getFont().getSize() * 2, Double.MAX_VALUE, getHeight() - getInsets().getTop() - getInsets().getBottom());
         size   = width < height ? width : height;
@@ -409,8 +393,6 @@ public class NToggleButton extends Region implements Toggle {
 
                     canvas.setWidth(width);
                     canvas.setHeight(height);
-
-                    cornerRadius = Helper.clamp(1, 10, 0.1 * size);
                     break;
                 case PILL:
                     pane.setMinSize(width, height);
@@ -420,8 +402,6 @@ public class NToggleButton extends Region implements Toggle {
 
                     canvas.setWidth(width);
                     canvas.setHeight(height);
-
-                    cornerRadius = Helper.clamp(1, size, size / 1.25);
                     break;
                 case CIRCULAR:
                     pane.setMinSize(width, height);
@@ -431,68 +411,76 @@ public class NToggleButton extends Region implements Toggle {
 
                     canvas.setWidth(size);
                     canvas.setHeight(size);
-
-                    cornerRadius = size < 1 ? 1 : size;
                     break;
             }
 
-            shadowRadius = Helper.clamp(2, 6, 0.12 * size);
-            shadowOffset = Helper.clamp(2, 6, 0.04 * size);
-
-            outerShadow = new DropShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            outerShadow.setInput(new DropShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
-
-            innerShadow = new InnerShadow(BlurType.TWO_PASS_BOX, brightShadowColor, shadowRadius, 0.5, -shadowOffset, -shadowOffset);
-            innerShadow.setInput(new InnerShadow(BlurType.TWO_PASS_BOX, darkShadowColor, shadowRadius, 0.5, shadowOffset, shadowOffset));
+            cornerRadius = ControlGeometry.getCornerRadius(nShape, size);
+            deriveShadow();
+
+            LevelOfDetail lod = getLevelOfDetail();
+            glowColor  = ControlGeometry.getGlowColor(getBackgroundColor(), getSelectedColor());
+            glowRadius = ControlGeometry.getGlowRadius(size);
+            // The glow is applied to the graphics node, so it is an instance of its own and not shared by the EffectCache
+            if (lod.isEffectsEnabled()) {
+                if (null == glow) { glow = new DropShadow(); }
+                glow.setBlurType(lod.getBlurType());
+                glow.setColor(glowColor);
+                glow.setRadius(glowRadius);
+            } else {
+                glow = null;
+            }
 
-            Color glowColor = Helper.isBright(getBackgroundColor()) ? Helper.getColorWithOpacity(getSelectedColor(), 0.25) : getSelectedColor();
-            glowRadius = Helper.clamp(4, 8, size * 0.2);
-            glow       = new DropShadow(BlurType.TWO_PASS_BOX, glowColor, glowRadius, 0.0, 0, 0);
+            embossedSprite = null;
+            pressedSprite  = null;
+            sunkenSprite   = null;
+            textSprite     = null;
 
             redraw();
         }
     }
 
-    protected void redraw() {
+    @Override protected void redraw() {
         ctx.clearRect(0, 0, width, height);
+        if (width <= 0 || height <= 0) { return; }
         boolean isSelected     = selected.get();
-        boolean isPressed      = pressed.get();
+        double  pressValue     = pressAnimation.getValue();
+        double  selectValue    = selectAnimation.getValue();
         double  shadowRadiusX2 = 2 * shadowRadius;
-        ctx.save();
-        ctx.setEffect(isSelected ? innerShadow : outerShadow);
-        ctx.setFill((isSelected || isPressed) ? pressedColor : getBackgroundColor());
-        switch (nShape) {
-            case RECTANGULAR:
-                if (isSelected || isPressed) {
-                    ctx.fillRoundRect(0, 0, width, height, cornerRadius, cornerRadius);
-                } else {
-                    ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, cornerRadius, cornerRadius);
-                }
-                break;
-            case PILL:
-            default:
-                if (isSelected || isPressed) {
-                    ctx.fillRoundRect(0, 0, width, height, size, size);
-                } else {
-                    ctx.fillRoundRect(shadowRadius, shadowRadius, width - shadowRadiusX2, height - shadowRadiusX2, cornerRadius, cornerRadius);
-                }
-                break;
+        // Cross fade between the cached sprites while a state change is animated
+        if (selectValue < 1) {
+            if (pressValue < 1) { getSprite(false, false).draw(ctx, 0, 0, (1 - pressValue) * (1 - selectValue)); }
+            if (pressValue > 0) { getSprite(false, true).draw(ctx, 0, 0, pressValue * (1 - selectValue)); }
         }
-        ctx.restore();
-        ctx.save();
+        if (selectValue > 0) { getSprite(true, false).draw(ctx, 0, 0, selectValue); }
         if (ContentDisplay.GRAPHIC_ONLY != contentDisplay) {
-            double offset = (selected.get() || pressed.get()) ? OFFSET : 0;
-            ctx.setFill(isSelected ? getSelectedColor() : getTextColor());
-            ctx.setFont(getFont());
-            ctx.setEffect(isSelected ? glow : null);
-            switch (nShape) {
-                case RECTANGULAR:
-                case PILL:
-                default:
-                    ctx.fillText(getText(), width * 0.5 + offset, height * 0.5 + offset, (width - shadowRadiusX2) * 0.9);
-                    break;
+            double offset   = OFFSET * Math.max(pressValue, selectValue);
+            double maxWidth = (width - shadowRadiusX2) * 0.9;
+            // The glowing text is a cached sprite so that animating the selection doesn't apply any effect
+            if (isSelected && null != glow) {
+                if (null == textSprite) { textSprite = createTextSprite(getText(), getFont(), getSelectedColor(), maxWidth, height, glowRadius, glowColor); }
+                textSprite.draw(ctx, (width - textSprite.getWidth()) * 0.5 + offset, (height - textSprite.getHeight()) * 0.5 + offset);
+            } else {
+                ctx.setFill(isSelected ? getSelectedColor() : getTextColor());
+                ctx.setFont(getFont());
+                ctx.fillText(getText(), width * 0.5 + offset, height * 0.5 + offset, maxWidth);
             }
         }
-        ctx.restore();
+    }
+
+    private Sprite getSprite(final boolean isSelected, final boolean isPressed) {
+        if (isSelected) {
+            if (null == sunkenSprite) { sunkenSprite = createSprite(true, pressedColor, NStyle.SUNKEN); }
+            return sunkenSprite;
+        } else if (isPressed) {
+            if (null == pressedSprite) { pressedSprite = createSprite(true, pressedColor, NStyle.EMBOSSED); }
+            return pressedSprite;
+        } else {
+            if (null == embossedSprite) { embossedSprite = createSprite(false, getBackgroundColor(), NStyle.EMBOSSED); }
+            return embossedSprite;
+        }
+    }
+
+    private Sprite createSprite(final boolean pressed, final Color fill, final NStyle style) {
+        return createSprite(nShape, width, height, ControlGeometry.getSpriteInset(pressed, shadowRadius), ControlGeometry.getSpriteArc(nShape, pressed, size, cornerRadius), fill, style);
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * One AnimationTimer that drives the state animations of all controls.
+ * The timer only runs while at least one animation is active, so idle
+ * controls don't cost anything. Animations can be disabled globally, in
+ * this case all state changes are applied immediately.
+ * All methods have to be called on the FX application thread.
+ */
+public class AnimationClock {
+    public interface Tickable {
+        /**
+         * Called once per pulse while the animation is registered
+         * @param now the timestamp of the current frame in nanoseconds
+         * @return false if the animation is finished and can be removed
+         */
+        boolean tick(long now);
+    }
+
+    private static final Set<Tickable>  ANIMATIONS = new LinkedHashSet<>();
+    private static final List<Tickable> CURRENT    = new ArrayList<>();
+    private static final List<Tickable> FINISHED   = new ArrayList<>();
+    private static final AnimationTimer TIMER      = new AnimationTimer() {
+        @Override public void handle(final long now) { AnimationClock.tick(now); }
+    };
+    private static       boolean        running    = false;
+    private static       boolean        enabled    = true;
+
+
+    // ******************** Constructors **************************************
+    private AnimationClock() {}
+
+
+    // ******************** Methods *******************************************
+    public static void add(final Tickable animation) {
+        if (ANIMATIONS.add(animation) && !running) {
+            running = true;
+            TIMER.start();
+        }
+    }
+
+    public static void remove(final Tickable animation) { ANIMATIONS.remove(animation); }
+
+    public static int getActiveCount() { return ANIMATIONS.size(); }
+
+    public static boolean isEnabled() { return enabled; }
+    public static void setEnabled(final boolean enabled) { AnimationClock.enabled = enabled; }
+
+    private static void tick(final long now) {
+        CURRENT.addAll(ANIMATIONS);
+        for (Tickable animation : CURRENT) {
+            if (!animation.tick(now)) { FINISHED.add(animation); }
+        }
+        CURRENT.clear();
+        if (!FINISHED.isEmpty()) {
+            ANIMATIONS.removeAll(FINISHED);
+            FINISHED.clear();
+        }
+        if (ANIMATIONS.isEmpty()) {
+            TIMER.stop();
+            running = false;
+        }
+    }
+}
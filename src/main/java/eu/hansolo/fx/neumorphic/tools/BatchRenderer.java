@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.geometry.VPos;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.function.Function;
+
+
+/**
+ * Renders neumorphic controls described by RenderSpecs into images without a
+ * scene, e.g. for reports or for the screens of embedded devices.
+ * The geometry (corner radius, shadow radius and offset, glow) is derived
+ * from the spec by the ControlGeometry that is used by the controls too.
+ * Shapes and the outline of the text are rasterized by the MaskRasterizer,
+ * the shadows and glows are rendered by the ShadowRasterizer, so rendering
+ * neither needs the FX application thread nor Java2D. PNG files are encoded
+ * without ImageIO. All methods are thread safe, lists of specs are rendered
+ * in parallel in a ForkJoinPool.
+ */
+public class BatchRenderer {
+    private static final double       OFFSET        = 0.5;
+    private static final byte[]       PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final Object       TEXT_LOCK     = new Object();
+    private        final ForkJoinPool pool;
+
+
+    // ******************** Constructors **************************************
+    public BatchRenderer() {
+        this(ForkJoinPool.commonPool());
+    }
+    public BatchRenderer(final ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Renders the given specs in parallel.
+     * @param specs the controls to render
+     * @return the images in the order of the specs
+     */
+    public List<WritableImage> renderImages(final List<RenderSpec> specs) { return renderAll(specs, BatchRenderer::renderImage); }
+
+    /**
+     * Renders the given specs in parallel and writes them as PNG files into the given directory.
+     * @param specs     the controls to render
+     * @param directory the directory the files will be written to, it will be created if needed
+     * @param fileName  returns the name of the file for a spec, e.g. "button-pressed.png"
+     * @return the written files in the order of the specs
+     * @throws IOException if the directory or a file could not be written
+     */
+    public List<Path> writePngs(final List<RenderSpec> specs, final Path directory, final Function<RenderSpec, String> fileName) throws IOException {
+        Files.createDirectories(directory);
+        try {
+            return renderAll(specs, spec -> {
+                final Path file = directory.resolve(fileName.apply(spec));
+                try {
+                    writePng(spec, file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return file;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Renders the given spec into an array of premultiplied ARGB pixels with
+     * the size spec.getPixelWidth() x spec.getPixelHeight().
+     * @param spec the control to render
+     * @return the premultiplied ARGB pixels
+     */
+    public static int[] renderArgb(final RenderSpec spec) {
+        final int    width  = spec.getPixelWidth();
+        final int    height = spec.getPixelHeight();
+        final int[]  pixels = new int[width * height];
+        if (width <= 0 || height <= 0) { return pixels; }
+
+        final double scale        = spec.getScale();
+        final double size         = Math.min(width, height) / scale;
+        final double shadowRadius = ControlGeometry.getShadowRadius(size);
+        final double shadowOffset = ControlGeometry.getShadowOffset(size);
+        final double cornerRadius = ControlGeometry.getCornerRadius(spec.getShape(), size);
+
+        // Same sprites as NButton, pressed controls are drawn sunken with the pressed color
+        final NTheme.Palette palette = NTheme.getPalette(spec.getBackgroundColor());
+        final double         inset   = ControlGeometry.getSpriteInset(spec.isPressed(), shadowRadius);
+        final double         arc     = ControlGeometry.getSpriteArc(spec.getShape(), spec.isPressed(), size, cornerRadius);
+        final int            fill    = Helper.toArgb(spec.isPressed() ? palette.getPressedColor() : spec.getBackgroundColor());
+        final NStyle         style   = spec.isPressed() ? NStyle.SUNKEN : spec.getStyle();
+        final int            bright  = Helper.toArgb(palette.getBrightShadowColor());
+        final int            dark    = Helper.toArgb(palette.getDarkShadowColor());
+
+        final float[] mask   = rasterizeShape(spec.getShape(), inset * scale, width, height, arc * scale);
+        final double  offset = shadowOffset * scale;
+        final double  radius = shadowRadius * scale;
+        if (NStyle.EMBOSSED == style) {
+            ShadowRasterizer.drawShadow(pixels, mask, width, height, style, radius, offset, bright, dark);
+            ShadowRasterizer.composite(pixels, mask, fill);
+        } else {
+            ShadowRasterizer.composite(pixels, mask, fill);
+            ShadowRasterizer.drawShadow(pixels, mask, width, height, style, radius, offset, bright, dark);
+        }
+
+        if (!spec.getText().isEmpty()) {
+            final double  textOffset = spec.isPressed() || spec.isSelected() ? OFFSET * scale : 0;
+            final double  maxWidth   = (width - 2 * shadowRadius * scale) * 0.9;
+            final float[] text       = rasterizeText(width, height, spec.getText(), spec.getFontSize() * scale, maxWidth, textOffset);
+            if (spec.isSelected()) {
+                final int     glowColor = Helper.toArgb(ControlGeometry.getGlowColor(spec.getBackgroundColor(), spec.getSelectedColor()));
+                final float[] glow      = text.clone();
+                ShadowRasterizer.blur(glow, width, height, ControlGeometry.getGlowRadius(size) * scale);
+                ShadowRasterizer.composite(pixels, glow, glowColor);
+                ShadowRasterizer.composite(pixels, text, Helper.toArgb(spec.getSelectedColor()));
+            } else {
+                ShadowRasterizer.composite(pixels, text, Helper.toArgb(spec.getTextColor()));
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Renders the given spec into a WritableImage, can be called on any thread.
+     * @param spec the control to render
+     * @return the rendered image
+     */
+    public static WritableImage renderImage(final RenderSpec spec) {
+        final int           width  = Math.max(1, spec.getPixelWidth());
+        final int           height = Math.max(1, spec.getPixelHeight());
+        final WritableImage image  = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), renderArgb(spec), 0, width);
+        return image;
+    }
+
+    /**
+     * Renders the given spec and writes it as PNG file.
+     * @param spec the control to render
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public static void writePng(final RenderSpec spec, final Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writePng(renderArgb(spec), Math.max(1, spec.getPixelWidth()), Math.max(1, spec.getPixelHeight()), out);
+        }
+    }
+
+    private <T> List<T> renderAll(final List<RenderSpec> specs, final Function<RenderSpec, T> render) {
+        final List<ForkJoinTask<T>> tasks = new ArrayList<>(specs.size());
+        for (RenderSpec spec : specs) { tasks.add(pool.submit(() -> render.apply(spec))); }
+        final List<T> results = new ArrayList<>(specs.size());
+        try {
+            for (ForkJoinTask<T> task : tasks) { results.add(task.join()); }
+        } catch (RuntimeException e) {
+            tasks.forEach(task -> task.cancel(false));
+            throw e instanceof CompletionException && e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return results;
+    }
+
+    private static float[] rasterizeShape(final NShape shape, final double inset, final int width, final int height, final double arc) {
+        final MaskRasterizer rasterizer = new MaskRasterizer(width, height);
+        if (NShape.CIRCULAR == shape) {
+            rasterizer.appendEllipse(inset, inset, width - 2 * inset, height - 2 * inset);
+        } else {
+            rasterizer.appendRoundRect(inset, inset, width - 2 * inset, height - 2 * inset, arc);
+        }
+        return rasterizer.toMask();
+    }
+
+    private static float[] rasterizeText(final int width, final int height, final String text, final double fontSize, final double maxWidth, final double offset) {
+        final javafx.scene.shape.Path outline;
+        final double                  textX;
+        final double                  textWidth;
+        // The outline is created by the font code of JavaFX which is not made for concurrent use
+        synchronized (TEXT_LOCK) {
+            final Text textNode = new Text(text);
+            textNode.setFont(Font.font(fontSize));
+            textNode.setTextOrigin(VPos.CENTER);
+            textX     = textNode.getLayoutBounds().getMinX();
+            textWidth = textNode.getLayoutBounds().getWidth();
+            outline   = (javafx.scene.shape.Path) Shape.subtract(textNode, new Rectangle(0, 0));
+        }
+        // Like fillText() with a max width, too wide texts are condensed around the center
+        final double         scaleX     = maxWidth > 0 && textWidth > maxWidth ? maxWidth / textWidth : 1;
+        final MaskRasterizer rasterizer = new MaskRasterizer(width, height);
+        rasterizer.setTransform(scaleX, 1, width * 0.5 + offset - (textX + textWidth * 0.5) * scaleX, height * 0.5 + offset);
+        rasterizer.appendPath(outline.getElements());
+        return rasterizer.toMask();
+    }
+
+    /**
+     * Writes the premultiplied ARGB pixels as 8 bit RGBA PNG without filtering.
+     */
+    private static void writePng(final int[] pixels, final int width, final int height, final OutputStream out) throws IOException {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        final DataOutputStream      ihdr   = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.write(new byte[] { 8, 6, 0, 0, 0 }); // bit depth, color type RGBA, compression, filter, interlace
+
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(data)) {
+            final byte[] line = new byte[1 + width * 4];
+            for (int y = 0 ; y < height ; y++) {
+                for (int x = 0, i = 1 ; x < width ; x++) {
+                    final int argb  = pixels[y * width + x];
+                    final int alpha = argb >>> 24;
+                    line[i++] = (byte) unpremultiply((argb >> 16) & 0xFF, alpha);
+                    line[i++] = (byte) unpremultiply((argb >> 8) & 0xFF, alpha);
+                    line[i++] = (byte) unpremultiply(argb & 0xFF, alpha);
+                    line[i++] = (byte) alpha;
+                }
+                deflater.write(line);
+            }
+        }
+
+        final DataOutputStream png = new DataOutputStream(out);
+        png.write(PNG_SIGNATURE);
+        writeChunk(png, "IHDR", header.toByteArray());
+        writeChunk(png, "IDAT", data.toByteArray());
+        writeChunk(png, "IEND", new byte[0]);
+        png.flush();
+    }
+
+    private static void writeChunk(final DataOutputStream out, final String type, final byte[] data) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32  crc       = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static int unpremultiply(final int component, final int alpha) {
+        if (0 == alpha || 255 == alpha) { return component; }
+        return Math.min(255, (component * 255 + alpha / 2) / alpha);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.paint.Color;
+
+
+/**
+ * Geometry of the neumorphic controls derived from their size, shared by the
+ * controls (in resize() and redraw()) and the BatchRenderer, so that rendered
+ * images look like the controls.
+ */
+public class ControlGeometry {
+    public static final double MAX_SHADOW_SIZE = 6;
+
+
+    // ******************** Constructors **************************************
+    private ControlGeometry() {}
+
+
+    // ******************** Methods *******************************************
+    public static double getShadowRadius(final double size) { return getShadowRadius(size, MAX_SHADOW_SIZE); }
+    public static double getShadowRadius(final double size, final double maxShadowSize) { return Helper.clamp(2, maxShadowSize, 0.12 * size); }
+
+    public static double getShadowOffset(final double size) { return getShadowOffset(size, MAX_SHADOW_SIZE); }
+    public static double getShadowOffset(final double size, final double maxShadowSize) { return Helper.clamp(2, maxShadowSize, 0.04 * size); }
+
+    public static double getCornerRadius(final NShape shape, final double size) {
+        switch (shape) {
+            case PILL    : return Helper.clamp(1, size, size / 1.25);
+            case CIRCULAR: return size < 1 ? 1 : size;
+            default      : return Helper.clamp(1, 10, 0.1 * size);
+        }
+    }
+
+    /**
+     * @return the inset of the sprite, pressed controls are drawn sunken without inset
+     */
+    public static double getSpriteInset(final boolean pressed, final double shadowRadius) { return pressed ? 0 : shadowRadius; }
+
+    /**
+     * @return the arc of the sprite, pressed pills and circles are drawn with the full size as arc
+     */
+    public static double getSpriteArc(final NShape shape, final boolean pressed, final double size, final double cornerRadius) {
+        return pressed && NShape.RECTANGULAR != shape ? size : cornerRadius;
+    }
+
+    public static double getGlowRadius(final double size) { return Helper.clamp(4, 8, size * 0.2); }
+
+    /**
+     * @return the color of the glow around selected elements, it is more transparent on bright backgrounds
+     */
+    public static Color getGlowColor(final Color backgroundColor, final Color selectedColor) {
+        return NTheme.getPalette(backgroundColor).isBright() ? Helper.getColorWithOpacity(selectedColor, 0.25) : selectedColor;
+    }
+}
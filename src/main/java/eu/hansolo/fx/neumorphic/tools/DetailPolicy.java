@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.transform.Transform;
+
+import java.util.Objects;
+
+
+/**
+ * Immutable policy that decides with which level of detail a control will be
+ * rendered. Controls that are smaller than the flat size or that are clipped
+ * out of their window will be rendered flat, controls that are smaller than
+ * the reduced size or that are redrawn while their scene is in motion (e.g.
+ * scrolling) will be rendered with reduced detail. Controls that were rendered
+ * with less than full detail will be rendered again once the motion settled.
+ * The default policy is used by all controls that have no own policy.
+ */
+public class DetailPolicy {
+    public  static final DetailPolicy  FULL_DETAIL    = new DetailPolicy(false, 0, 0, false);
+    private static       DetailPolicy  defaultPolicy  = new DetailPolicy(true, 8, 16, true);
+    private        final boolean       enabled;
+    private        final double        flatSize;
+    private        final double        reducedSize;
+    private        final boolean       reduceInMotion;
+
+
+    // ******************** Constructors **************************************
+    public DetailPolicy(final boolean enabled, final double flatSize, final double reducedSize, final boolean reduceInMotion) {
+        this.enabled        = enabled;
+        this.flatSize       = flatSize;
+        this.reducedSize    = reducedSize;
+        this.reduceInMotion = reduceInMotion;
+    }
+
+
+    // ******************** Methods *******************************************
+    public static DetailPolicy getDefault() { return defaultPolicy; }
+    /**
+     * Sets the policy for all controls that have no own policy, the controls
+     * will use the new policy with their next redraw.
+     * @param policy the new default policy
+     */
+    public static void setDefault(final DetailPolicy policy) { defaultPolicy = Objects.requireNonNull(policy); }
+
+    public boolean isEnabled() { return enabled; }
+
+    public double getFlatSize() { return flatSize; }
+
+    public double getReducedSize() { return reducedSize; }
+
+    public boolean isReduceInMotion() { return reduceInMotion; }
+
+    public DetailPolicy withEnabled(final boolean enabled) { return new DetailPolicy(enabled, flatSize, reducedSize, reduceInMotion); }
+
+    public DetailPolicy withFlatSize(final double flatSize) { return new DetailPolicy(enabled, flatSize, reducedSize, reduceInMotion); }
+
+    public DetailPolicy withReducedSize(final double reducedSize) { return new DetailPolicy(enabled, flatSize, reducedSize, reduceInMotion); }
+
+    public DetailPolicy withReduceInMotion(final boolean reduceInMotion) { return new DetailPolicy(enabled, flatSize, reducedSize, reduceInMotion); }
+
+    /**
+     * Returns the level of detail for the given node
+     * @param node     the control that will be rendered
+     * @param inMotion true if the scene of the control is in motion
+     * @return the level of detail the control should be rendered with
+     */
+    public LevelOfDetail evaluate(final Node node, final boolean inMotion) {
+        if (!enabled) { return LevelOfDetail.FULL; }
+        final Bounds bounds = node.getLayoutBounds();
+        final double size   = Math.min(bounds.getWidth(), bounds.getHeight());
+        if (size < flatSize || isClippedOut(node)) { return LevelOfDetail.FLAT; }
+        if (size < reducedSize || (reduceInMotion && inMotion)) { return LevelOfDetail.REDUCED; }
+        return LevelOfDetail.FULL;
+    }
+
+    /**
+     * Returns true if the given node is outside of its scene or outside of the
+     * clip of one of its parents (e.g. the viewport of a ScrollPane).
+     * @param node the node to check
+     * @return true if no part of the node is visible
+     */
+    public static boolean isClippedOut(final Node node) {
+        final Scene scene = node.getScene();
+        if (null == scene) { return false; }
+        // The bounds are transformed by hand because localToScene() would allocate new bounds on every redraw
+        final Transform transform = node.getLocalToSceneTransform();
+        final Bounds    bounds    = node.getLayoutBounds();
+        final double    minX      = getMinX(transform, bounds);
+        final double    minY      = getMinY(transform, bounds);
+        final double    maxX      = getMaxX(transform, bounds);
+        final double    maxY      = getMaxY(transform, bounds);
+        if (!intersects(minX, minY, maxX, maxY, 0, 0, scene.getWidth(), scene.getHeight())) { return true; }
+        for (Parent parent = node.getParent() ; null != parent ; parent = parent.getParent()) {
+            final Node clip = parent.getClip();
+            if (null == clip) { continue; }
+            final Transform parentTransform = parent.getLocalToSceneTransform();
+            final Bounds    clipBounds      = clip.getBoundsInParent();
+            if (!intersects(minX, minY, maxX, maxY, getMinX(parentTransform, clipBounds), getMinY(parentTransform, clipBounds),
+                            getMaxX(parentTransform, clipBounds), getMaxY(parentTransform, clipBounds))) { return true; }
+        }
+        return false;
+    }
+
+    private static boolean intersects(final double minX1, final double minY1, final double maxX1, final double maxY1,
+                                      final double minX2, final double minY2, final double maxX2, final double maxY2) {
+        return maxX1 >= minX2 && maxY1 >= minY2 && minX1 <= maxX2 && minY1 <= maxY2;
+    }
+
+    private static double getMinX(final Transform t, final Bounds b) {
+        return Math.min(Math.min(t.getMxx() * b.getMinX() + t.getMxy() * b.getMinY(), t.getMxx() * b.getMaxX() + t.getMxy() * b.getMinY()),
+                        Math.min(t.getMxx() * b.getMinX() + t.getMxy() * b.getMaxY(), t.getMxx() * b.getMaxX() + t.getMxy() * b.getMaxY())) + t.getTx();
+    }
+
+    private static double getMaxX(final Transform t, final Bounds b) {
+        return Math.max(Math.max(t.getMxx() * b.getMinX() + t.getMxy() * b.getMinY(), t.getMxx() * b.getMaxX() + t.getMxy() * b.getMinY()),
+                        Math.max(t.getMxx() * b.getMinX() + t.getMxy() * b.getMaxY(), t.getMxx() * b.getMaxX() + t.getMxy() * b.getMaxY())) + t.getTx();
+    }
+
+    private static double getMinY(final Transform t, final Bounds b) {
+        return Math.min(Math.min(t.getMyx() * b.getMinX() + t.getMyy() * b.getMinY(), t.getMyx() * b.getMaxX() + t.getMyy() * b.getMinY()),
+                        Math.min(t.getMyx() * b.getMinX() + t.getMyy() * b.getMaxY(), t.getMyx() * b.getMaxX() + t.getMyy() * b.getMaxY())) + t.getTy();
+    }
+
+    private static double getMaxY(final Transform t, final Bounds b) {
+        return Math.max(Math.max(t.getMyx() * b.getMinX() + t.getMyy() * b.getMinY(), t.getMyx() * b.getMaxX() + t.getMyy() * b.getMinY()),
+                        Math.max(t.getMyx() * b.getMinX() + t.getMyy() * b.getMaxY(), t.getMyx() * b.getMaxX() + t.getMyy() * b.getMaxY())) + t.getTy();
+    }
+}
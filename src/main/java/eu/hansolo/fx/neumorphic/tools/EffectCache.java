@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import eu.hansolo.fx.neumorphic.tools.RenderEvents.NEffectRebuild;
+import javafx.scene.effect.BlurType;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.effect.Effect;
+import javafx.scene.effect.InnerShadow;
+import javafx.scene.paint.Color;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Shared cache for the neumorphic effect chains (bright shadow up-left,
+ * dark shadow down-right) that all controls use.
+ * The returned effects are shared between controls and must be treated
+ * as immutable, never modify them. They are meant for GraphicsContext.setEffect(),
+ * a node needs an effect instance of its own.
+ */
+public class EffectCache {
+    public enum Type { OUTER, INNER, GLOW }
+
+    private static final int                    DEFAULT_MAX_ENTRIES = 512;
+    private static final LongAdder              HITS                = new LongAdder();
+    private static final LongAdder              MISSES              = new LongAdder();
+    private static final Map<Key, Effect>       CACHE               = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(final Map.Entry<Key, Effect> eldest) { return size() > maxEntries; }
+    };
+    private static       int                    maxEntries          = DEFAULT_MAX_ENTRIES;
+
+
+    // ******************** Constructors **************************************
+    private EffectCache() {}
+
+
+    // ******************** Methods *******************************************
+    public static DropShadow getOuterShadow(final double shadowRadius, final double shadowOffset, final Color brightShadowColor, final Color darkShadowColor) {
+        return getOuterShadow(shadowRadius, shadowOffset, brightShadowColor, darkShadowColor, BlurType.TWO_PASS_BOX);
+    }
+    public static DropShadow getOuterShadow(final double shadowRadius, final double shadowOffset, final Color brightShadowColor, final Color darkShadowColor, final BlurType blurType) {
+        return (DropShadow) get(shadowRadius, shadowOffset, brightShadowColor, darkShadowColor, Type.OUTER, blurType);
+    }
+
+    public static InnerShadow getInnerShadow(final double shadowRadius, final double shadowOffset, final Color brightShadowColor, final Color darkShadowColor) {
+        return getInnerShadow(shadowRadius, shadowOffset, brightShadowColor, darkShadowColor, BlurType.TWO_PASS_BOX);
+    }
+    public static InnerShadow getInnerShadow(final double shadowRadius, final double shadowOffset, final Color brightShadowColor, final Color darkShadowColor, final BlurType blurType) {
+        return (InnerShadow) get(shadowRadius, shadowOffset, brightShadowColor, darkShadowColor, Type.INNER, blurType);
+    }
+
+    public static DropShadow getGlow(final double glowRadius, final Color glowColor) {
+        return getGlow(glowRadius, glowColor, BlurType.TWO_PASS_BOX);
+    }
+    public static DropShadow getGlow(final double glowRadius, final Color glowColor, final BlurType blurType) {
+        return (DropShadow) get(glowRadius, 0, glowColor, glowColor, Type.GLOW, blurType);
+    }
+
+    public static Effect get(final double shadowRadius, final double shadowOffset, final Color brightShadowColor, final Color darkShadowColor, final Type type) {
+        return get(shadowRadius, shadowOffset, brightShadowColor, darkShadowColor, type, BlurType.TWO_PASS_BOX);
+    }
+    public static Effect get(final double shadowRadius, final double shadowOffset, final Color brightShadowColor, final Color darkShadowColor, final Type type, final BlurType blurType) {
+        final Key key = new Key(shadowRadius, shadowOffset, brightShadowColor, darkShadowColor, type, blurType);
+        synchronized (CACHE) {
+            Effect effect = CACHE.get(key);
+            if (null != effect) {
+                HITS.increment();
+                return effect;
+            }
+            MISSES.increment();
+            RenderMetrics.effectAllocated();
+            final NEffectRebuild event = new NEffectRebuild();
+            event.begin();
+            effect = create(key);
+            event.end();
+            if (event.shouldCommit()) {
+                event.effectType = key.type.name();
+                event.blurType   = key.blurType.name();
+                event.radius     = key.shadowRadius;
+                event.offset     = key.shadowOffset;
+                event.commit();
+            }
+            CACHE.put(key, effect);
+            return effect;
+        }
+    }
+
+    public static long getHits() { return HITS.sum(); }
+
+    public static long getMisses() { return MISSES.sum(); }
+
+    public static int getSize() {
+        synchronized (CACHE) { return CACHE.size(); }
+    }
+
+    public static int getMaxEntries() { return maxEntries; }
+    public static void setMaxEntries(final int maxEntries) {
+        synchronized (CACHE) {
+            EffectCache.maxEntries = Helper.clamp(1, Integer.MAX_VALUE, maxEntries);
+            while (CACHE.size() > EffectCache.maxEntries) { CACHE.remove(CACHE.keySet().iterator().next()); }
+        }
+    }
+
+    public static void clear() {
+        synchronized (CACHE) { CACHE.clear(); }
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    private static Effect create(final Key key) {
+        switch (key.type) {
+            case INNER:
+                InnerShadow innerShadow = new InnerShadow(key.blurType, key.brightShadowColor, key.shadowRadius, 0.5, -key.shadowOffset, -key.shadowOffset);
+                innerShadow.setInput(new InnerShadow(key.blurType, key.darkShadowColor, key.shadowRadius, 0.5, key.shadowOffset, key.shadowOffset));
+                return innerShadow;
+            case GLOW:
+                // Spread 0.0 like the glows the controls created on resize, the 0.5 of their constructors was never drawn
+                return new DropShadow(key.blurType, key.brightShadowColor, key.shadowRadius, 0.0, 0, 0);
+            case OUTER:
+            default:
+                DropShadow outerShadow = new DropShadow(key.blurType, key.brightShadowColor, key.shadowRadius, 0.5, -key.shadowOffset, -key.shadowOffset);
+                outerShadow.setInput(new DropShadow(key.blurType, key.darkShadowColor, key.shadowRadius, 0.5, key.shadowOffset, key.shadowOffset));
+                return outerShadow;
+        }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private static final class Key {
+        private final double   shadowRadius;
+        private final double   shadowOffset;
+        private final Color    brightShadowColor;
+        private final Color    darkShadowColor;
+        private final Type     type;
+        private final BlurType blurType;
+        private final int      hashCode;
+
+
+        private Key(final double shadowRadius, final double shadowOffset, final Color brightShadowColor, final Color darkShadowColor, final Type type, final BlurType blurType) {
+            this.shadowRadius      = shadowRadius;
+            this.shadowOffset      = shadowOffset;
+            this.brightShadowColor = brightShadowColor;
+            this.darkShadowColor   = darkShadowColor;
+            this.type              = type;
+            this.blurType          = blurType;
+            this.hashCode          = Objects.hash(shadowRadius, shadowOffset, brightShadowColor, darkShadowColor, type, blurType);
+        }
+
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof Key)) { return false; }
+            final Key key = (Key) o;
+            return Double.compare(key.shadowRadius, shadowRadius) == 0 &&
+                   Double.compare(key.shadowOffset, shadowOffset) == 0 &&
+                   type == key.type &&
+                   blurType == key.blurType &&
+                   Objects.equals(brightShadowColor, key.brightShadowColor) &&
+                   Objects.equals(darkShadowColor, key.darkShadowColor);
+        }
+
+        @Override public int hashCode() { return hashCode; }
+    }
+}
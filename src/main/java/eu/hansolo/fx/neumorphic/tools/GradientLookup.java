@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Stop;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Immutable, precomputed color gradient.
+ * The gradient is sampled once into a lookup table of packed ARGB colors
+ * with a fixed resolution, so looking up a color is a simple array access
+ * that does not create any objects. Use it instead of Helper.getColorAt()
+ * whenever the same gradient is queried more than once.
+ */
+public class GradientLookup {
+    public  static final int      DEFAULT_RESOLUTION = 256;
+    private        final double[] offsets;
+    private        final int[]    stopColors;
+    private        final int[]    lookup;
+    private        final Color[]  colors;
+
+
+    // ******************** Constructors **************************************
+    public GradientLookup(final List<Stop> stops) {
+        this(stops, DEFAULT_RESOLUTION);
+    }
+    public GradientLookup(final List<Stop> stops, final int resolution) {
+        if (resolution < 2) { throw new IllegalArgumentException("resolution must be at least 2"); }
+
+        final List<Stop> sortedStops = new ArrayList<>(null == stops ? List.of() : stops);
+        sortedStops.sort(Comparator.comparingDouble(Stop::getOffset));
+        if (sortedStops.isEmpty()) { sortedStops.add(new Stop(0.0, Color.BLACK)); }
+
+        final int size = sortedStops.size();
+        offsets    = new double[size];
+        stopColors = new int[size];
+        for (int i = 0 ; i < size ; i++) {
+            Stop stop     = sortedStops.get(i);
+            offsets[i]    = Helper.clamp(0.0, 1.0, stop.getOffset());
+            stopColors[i] = Helper.toArgb(stop.getColor());
+        }
+
+        lookup = new int[resolution];
+        colors = new Color[resolution];
+        for (int i = 0 ; i < resolution ; i++) {
+            lookup[i] = interpolate(i / (double) (resolution - 1));
+            colors[i] = Helper.fromArgb(lookup[i]);
+        }
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getResolution() { return lookup.length; }
+
+    /**
+     * Returns the color at the given position of the gradient
+     * @param position position in the range 0 - 1
+     * @return the color at the given position
+     */
+    public Color colorAt(final double position) { return colors[index(position)]; }
+
+    /**
+     * Returns the color at the given position as packed ARGB color
+     * @param position position in the range 0 - 1
+     * @return the packed ARGB color at the given position
+     */
+    public int argbAt(final double position) { return lookup[index(position)]; }
+
+    /**
+     * Looks up the colors for all given positions at once
+     * @param positions positions in the range 0 - 1
+     * @param out       array of at least positions.length elements that will receive the packed ARGB colors
+     */
+    public void fill(final double[] positions, final int[] out) {
+        if (out.length < positions.length) { throw new IllegalArgumentException("out must have at least " + positions.length + " elements"); }
+        for (int i = 0 ; i < positions.length ; i++) { out[i] = lookup[index(positions[i])]; }
+    }
+
+    private int index(final double position) {
+        final int max = lookup.length - 1;
+        if (position > 0) {
+            return position < 1 ? (int) (position * max + 0.5) : max;
+        }
+        return 0;
+    }
+
+    private int interpolate(final double position) {
+        final int last = offsets.length - 1;
+        if (position <= offsets[0])    { return stopColors[0]; }
+        if (position >= offsets[last]) { return stopColors[last]; }
+
+        // Binary search for the first stop with an offset > position
+        int low  = 0;
+        int high = last;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (offsets[mid] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        final double lowerOffset = offsets[low - 1];
+        final double upperOffset = offsets[low];
+        final int    lower       = stopColors[low - 1];
+        final int    upper       = stopColors[low];
+        final double fraction    = upperOffset > lowerOffset ? (position - lowerOffset) / (upperOffset - lowerOffset) : 0;
+        return Helper.argb(Helper.getAlpha(lower) + (Helper.getAlpha(upper) - Helper.getAlpha(lower)) * fraction,
+                           Helper.getRed(lower)   + (Helper.getRed(upper)   - Helper.getRed(lower))   * fraction,
+                           Helper.getGreen(lower) + (Helper.getGreen(upper) - Helper.getGreen(lower)) * fraction,
+                           Helper.getBlue(lower)  + (Helper.getBlue(upper)  - Helper.getBlue(lower))  * fraction);
+    }
+}
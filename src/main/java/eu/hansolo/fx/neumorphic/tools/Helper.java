@@ -27,6 +27,11 @@ import java.util.TreeMap;
 
 
 public class Helper {
+    private static final double WEIGHT_FACTOR_RED   = 0.299;
+    private static final double WEIGHT_FACTOR_GREEN = 0.587;
+    private static final double WEIGHT_FACTOR_BLUE  = 0.144;
+    private static final double U_MAX               = 0.436;
+    private static final double V_MAX               = 0.615;
 
     public static void enableNode(final Node node, final boolean enable) {
         node.setVisible(enable);
@@ -68,8 +73,7 @@ public class Helper {
         final double pos = clamp(0d, 1d, position);
         final Color color;
         if (stopMap.size() == 1) {
-            final Map<Double, Color> ONE_ENTRY = (Map<Double, Color>) stopMap.entrySet().iterator().next();
-            color = stopMap.get(ONE_ENTRY.keySet().iterator().next()).getColor();
+            color = stopMap.values().iterator().next().getColor();
         } else {
             Stop lowerBound = stopMap.get(0.0);
             Stop upperBound = stopMap.get(1.0);
@@ -105,7 +109,21 @@ public class Helper {
     public static final double[] toHSL(final Color color) {
         return rgbToHSL(color.getRed(), color.getGreen(), color.getBlue());
     }
+    public static final double[] toHSL(final Color color, final double[] hsl) {
+        return rgbToHSL(color.getRed(), color.getGreen(), color.getBlue(), hsl);
+    }
     public static final double[] rgbToHSL(final double red, final double green, final double blue) {
+        return rgbToHSL(red, green, blue, new double[3]);
+    }
+    /**
+     * Converts the given rgb values to hsl and writes them to the given array
+     * @param red   red value in the range 0 - 1
+     * @param green green value in the range 0 - 1
+     * @param blue  blue value in the range 0 - 1
+     * @param hsl   array of at least 3 elements that will receive hue (0 - 360), saturation and luminance
+     * @return the given array
+     */
+    public static final double[] rgbToHSL(final double red, final double green, final double blue, final double[] hsl) {
         //	Minimum and Maximum RGB values are used in the HSL calculations
         double min = Math.min(red, Math.min(green, blue));
         double max = Math.max(red, Math.max(green, blue));
@@ -136,7 +154,10 @@ public class Helper {
             saturation = (max - min) / (2 - max - min);
         }
 
-        return new double[] { hue, saturation, luminance};
+        hsl[0] = hue;
+        hsl[1] = saturation;
+        hsl[2] = luminance;
+        return hsl;
     }
 
     public static final Color hslToRGB(double hue, double saturation, double luminance) {
@@ -169,27 +190,110 @@ public class Helper {
     }
 
     public static final Color derive(final Color color, final double brightnessFactor) {
-        double hue        = color.getHue();
-        double brightness = color.getBrightness();
-        double saturation = color.getSaturation();
+        return fromArgb(deriveArgb(toArgb(color), brightnessFactor));
+    }
+    /**
+     * Multiplies the brightness (HSB) of the given packed ARGB color with the
+     * given factor without creating any objects. Like derive(Color, double)
+     * the returned color is always opaque.
+     * @param argb             packed ARGB color
+     * @param brightnessFactor factor the brightness will be multiplied with
+     * @return packed ARGB color with the derived brightness
+     */
+    public static final int deriveArgb(final int argb, final double brightnessFactor) {
+        final double red        = getRed(argb);
+        final double green      = getGreen(argb);
+        final double blue       = getBlue(argb);
+        final double max        = Math.max(red, Math.max(green, blue));
+        final double min        = Math.min(red, Math.min(green, blue));
+        final double delta      = max - min;
+        final double saturation = max > 0 ? delta / max : 0;
+        double       hue        = 0;
+        if (delta > 0) {
+            if (max == red) {
+                hue = (green - blue) / delta;
+            } else if (max == green) {
+                hue = 2 + (blue - red) / delta;
+            } else {
+                hue = 4 + (red - green) / delta;
+            }
+            hue /= 6;
+            if (hue < 0) { hue += 1; }
+        }
+        double brightness = max;
         if (brightness == 0 && brightnessFactor > 0) { brightness = 0.05; }
         brightness = clamp(0, 1, brightness * brightnessFactor);
-        return Color.hsb(hue, saturation, brightness);
-    }
-
-    public static final boolean isBright(final Color color) { return Double.compare(colorToYUV(color)[0], 0.5) >= 0.0; }
-    public static final boolean isDark(final Color color) { return colorToYUV(color)[0] < 0.5; }
-
-    public static final double[] colorToYUV(final Color color) {
-        final double WEIGHT_FACTOR_RED   = 0.299;
-        final double WEIGHT_FACTOR_GREEN = 0.587;
-        final double WEIGHT_FACTOR_BLUE  = 0.144;
-        final double U_MAX               = 0.436;
-        final double V_MAX               = 0.615;
-        double y = clamp(0, 1, WEIGHT_FACTOR_RED * color.getRed() + WEIGHT_FACTOR_GREEN * color.getGreen() + WEIGHT_FACTOR_BLUE * color.getBlue());
-        double u = clamp(-U_MAX, U_MAX, U_MAX * ((color.getBlue() - y) / (1 - WEIGHT_FACTOR_BLUE)));
-        double v = clamp(-V_MAX, V_MAX, V_MAX * ((color.getRed() - y) / (1 - WEIGHT_FACTOR_RED)));
-        return new double[] { y, u, v };
+        return hsbToArgb(hue, saturation, brightness, 1.0);
+    }
+    /**
+     * Converts the given hsb values to a packed ARGB color without creating any objects
+     * @param hue        hue in the range 0 - 1
+     * @param saturation saturation in the range 0 - 1
+     * @param brightness brightness in the range 0 - 1
+     * @param opacity    opacity in the range 0 - 1
+     * @return packed ARGB color
+     */
+    public static final int hsbToArgb(final double hue, final double saturation, final double brightness, final double opacity) {
+        if (saturation == 0) { return argb(opacity, brightness, brightness, brightness); }
+        final double h = (hue - Math.floor(hue)) * 6.0;
+        final double f = h - Math.floor(h);
+        final double p = brightness * (1.0 - saturation);
+        final double q = brightness * (1.0 - saturation * f);
+        final double t = brightness * (1.0 - (saturation * (1.0 - f)));
+        switch ((int) h) {
+            case 0 : return argb(opacity, brightness, t, p);
+            case 1 : return argb(opacity, q, brightness, p);
+            case 2 : return argb(opacity, p, brightness, t);
+            case 3 : return argb(opacity, p, q, brightness);
+            case 4 : return argb(opacity, t, p, brightness);
+            default: return argb(opacity, brightness, p, q);
+        }
+    }
+
+    public static final int toArgb(final Color color) { return argb(color.getOpacity(), color.getRed(), color.getGreen(), color.getBlue()); }
+    public static final Color fromArgb(final int argb) { return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, getAlpha(argb)); }
+
+    public static final int argb(final double opacity, final double red, final double green, final double blue) {
+        return toByte(opacity) << 24 | toByte(red) << 16 | toByte(green) << 8 | toByte(blue);
+    }
+    public static final int withOpacity(final int argb, final double opacity) { return toByte(opacity) << 24 | (argb & 0x00FFFFFF); }
+
+    public static final double getAlpha(final int argb) { return ((argb >>> 24) & 0xFF) / 255.0; }
+    public static final double getRed(final int argb) { return ((argb >> 16) & 0xFF) / 255.0; }
+    public static final double getGreen(final int argb) { return ((argb >> 8) & 0xFF) / 255.0; }
+    public static final double getBlue(final int argb) { return (argb & 0xFF) / 255.0; }
+
+    private static final int toByte(final double value) { return (int) Math.round(clamp(0.0, 1.0, value) * 255.0); }
+
+    public static final boolean isBright(final Color color) { return Double.compare(getLuma(color.getRed(), color.getGreen(), color.getBlue()), 0.5) >= 0.0; }
+    public static final boolean isBright(final int argb) { return Double.compare(getLuma(getRed(argb), getGreen(argb), getBlue(argb)), 0.5) >= 0.0; }
+    public static final boolean isDark(final Color color) { return getLuma(color.getRed(), color.getGreen(), color.getBlue()) < 0.5; }
+    public static final boolean isDark(final int argb) { return getLuma(getRed(argb), getGreen(argb), getBlue(argb)) < 0.5; }
+
+    public static final double[] colorToYUV(final Color color) { return colorToYUV(color, new double[3]); }
+    /**
+     * Converts the given color to yuv and writes the values to the given array
+     * @param color the color to convert
+     * @param yuv   array of at least 3 elements that will receive y, u and v
+     * @return the given array
+     */
+    public static final double[] colorToYUV(final Color color, final double[] yuv) {
+        return rgbToYUV(color.getRed(), color.getGreen(), color.getBlue(), yuv);
+    }
+    public static final double[] argbToYUV(final int argb, final double[] yuv) {
+        return rgbToYUV(getRed(argb), getGreen(argb), getBlue(argb), yuv);
+    }
+    private static final double[] rgbToYUV(final double red, final double green, final double blue, final double[] yuv) {
+        double y = getLuma(red, green, blue);
+        double u = clamp(-U_MAX, U_MAX, U_MAX * ((blue - y) / (1 - WEIGHT_FACTOR_BLUE)));
+        double v = clamp(-V_MAX, V_MAX, V_MAX * ((red - y) / (1 - WEIGHT_FACTOR_RED)));
+        yuv[0] = y;
+        yuv[1] = u;
+        yuv[2] = v;
+        return yuv;
+    }
+    private static final double getLuma(final double red, final double green, final double blue) {
+        return clamp(0, 1, WEIGHT_FACTOR_RED * red + WEIGHT_FACTOR_GREEN * green + WEIGHT_FACTOR_BLUE * blue);
     }
 
     public static final String colorToCss(final Color color) {
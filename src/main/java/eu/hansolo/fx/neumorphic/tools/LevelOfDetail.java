@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.effect.BlurType;
+
+
+/**
+ * Level of detail a control is rendered with, ordered from the highest to
+ * the lowest quality.
+ * FULL renders the shadows and glows with a two pass box blur at the render scale of the window,
+ * FAST renders the shadows and glows with a one pass box blur,
+ * REDUCED renders the shadows into low resolution sprites and skips the glows,
+ * FLAT only fills the shapes without any shadows or glows.
+ */
+public enum LevelOfDetail {
+    FULL,
+    FAST,
+    REDUCED,
+    FLAT;
+
+    public static final double REDUCED_SCALE = 0.5;
+
+
+    /**
+     * @param style the style of the shape in full detail
+     * @return the style to render the shape with, null for a flat shape
+     */
+    public NStyle getStyle(final NStyle style) { return FLAT == this ? null : style; }
+
+    /**
+     * @param renderScale the render scale of the window
+     * @return the render scale that should be used for the sprites
+     */
+    public double getScale(final double renderScale) { return REDUCED == this ? renderScale * REDUCED_SCALE : renderScale; }
+
+    /**
+     * @return the blur type that should be used for shadows and glows
+     */
+    public BlurType getBlurType() { return FULL == this ? BlurType.TWO_PASS_BOX : BlurType.ONE_PASS_BOX; }
+
+    /**
+     * @return true if effects that are applied on every redraw (e.g. glows) should be rendered
+     */
+    public boolean isEffectsEnabled() { return FULL == this || FAST == this; }
+
+    /**
+     * @param other another level of detail
+     * @return the level with the lower quality of this and the given level
+     */
+    public LevelOfDetail min(final LevelOfDetail other) { return other.ordinal() > ordinal() ? other : this; }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.QuadCurveTo;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Pure Java rasterizer for the alpha masks of the ShadowRasterizer that works
+ * on any thread and doesn't need Java2D.
+ * Paths are flattened into line segments and filled with the non zero winding
+ * rule. The coverage of a pixel is sampled on 16 sub scanlines, on each sub
+ * scanline the exact horizontal coverage of the spans is accumulated, so
+ * edges are antialiased like Java2D does it.
+ * An instance is not thread safe, use one instance per mask.
+ */
+public class MaskRasterizer {
+    private static final int      SUBSAMPLES = 16;
+    private static final double   FLATNESS   = 0.25;
+    private static final double   KAPPA      = 0.5522847498307936;
+    private        final int      width;
+    private        final int      height;
+    private              double   scaleX;
+    private              double   scaleY;
+    private              double   translateX;
+    private              double   translateY;
+    private              double   startX;
+    private              double   startY;
+    private              double   lastX;
+    private              double   lastY;
+    private              double[] edges;
+    private              int      edgeCount;
+
+
+    // ******************** Constructors **************************************
+    public MaskRasterizer(final int width, final int height) {
+        if (width < 0 || height < 0) { throw new IllegalArgumentException("Width and height must not be negative"); }
+        this.width  = width;
+        this.height = height;
+        this.scaleX = 1;
+        this.scaleY = 1;
+        this.edges  = new double[64];
+    }
+
+
+    // ******************** Methods *******************************************
+    public int getWidth() { return width; }
+
+    public int getHeight() { return height; }
+
+    /**
+     * Sets the transform that is applied to all following path coordinates,
+     * x' = x * scaleX + translateX and y' = y * scaleY + translateY.
+     */
+    public void setTransform(final double scaleX, final double scaleY, final double translateX, final double translateY) {
+        this.scaleX     = scaleX;
+        this.scaleY     = scaleY;
+        this.translateX = translateX;
+        this.translateY = translateY;
+    }
+
+    public void moveTo(final double x, final double y) {
+        closePath();
+        startX = lastX = tx(x);
+        startY = lastY = ty(y);
+    }
+
+    public void lineTo(final double x, final double y) {
+        final double x1 = tx(x);
+        final double y1 = ty(y);
+        addEdge(lastX, lastY, x1, y1);
+        lastX = x1;
+        lastY = y1;
+    }
+
+    public void quadTo(final double controlX, final double controlY, final double x, final double y) {
+        final double x0 = lastX;
+        final double y0 = lastY;
+        final double cx = tx(controlX);
+        final double cy = ty(controlY);
+        final double x2 = tx(x);
+        final double y2 = ty(y);
+        final int    n  = getSegments(Math.hypot(cx - x0, cy - y0) + Math.hypot(x2 - cx, y2 - cy));
+        for (int i = 1 ; i <= n ; i++) {
+            final double t  = (double) i / n;
+            final double mt = 1 - t;
+            final double px = mt * mt * x0 + 2 * mt * t * cx + t * t * x2;
+            final double py = mt * mt * y0 + 2 * mt * t * cy + t * t * y2;
+            addEdge(lastX, lastY, px, py);
+            lastX = px;
+            lastY = py;
+        }
+    }
+
+    public void curveTo(final double controlX1, final double controlY1, final double controlX2, final double controlY2, final double x, final double y) {
+        final double x0  = lastX;
+        final double y0  = lastY;
+        final double cx1 = tx(controlX1);
+        final double cy1 = ty(controlY1);
+        final double cx2 = tx(controlX2);
+        final double cy2 = ty(controlY2);
+        final double x3  = tx(x);
+        final double y3  = ty(y);
+        final int    n   = getSegments(Math.hypot(cx1 - x0, cy1 - y0) + Math.hypot(cx2 - cx1, cy2 - cy1) + Math.hypot(x3 - cx2, y3 - cy2));
+        for (int i = 1 ; i <= n ; i++) {
+            final double t  = (double) i / n;
+            final double mt = 1 - t;
+            final double px = mt * mt * mt * x0 + 3 * mt * mt * t * cx1 + 3 * mt * t * t * cx2 + t * t * t * x3;
+            final double py = mt * mt * mt * y0 + 3 * mt * mt * t * cy1 + 3 * mt * t * t * cy2 + t * t * t * y3;
+            addEdge(lastX, lastY, px, py);
+            lastX = px;
+            lastY = py;
+        }
+    }
+
+    public void closePath() {
+        if (lastX != startX || lastY != startY) { addEdge(lastX, lastY, startX, startY); }
+        lastX = startX;
+        lastY = startY;
+    }
+
+    /**
+     * Adds a rounded rectangle like the RoundRectangle2D of Java2D.
+     * @param arc the diameter of the corner arcs
+     */
+    public void appendRoundRect(final double x, final double y, final double width, final double height, final double arc) {
+        final double rx = Math.min(Math.max(arc, 0) * 0.5, width * 0.5);
+        final double ry = Math.min(Math.max(arc, 0) * 0.5, height * 0.5);
+        final double kx = rx * KAPPA;
+        final double ky = ry * KAPPA;
+        moveTo(x + rx, y);
+        lineTo(x + width - rx, y);
+        curveTo(x + width - rx + kx, y, x + width, y + ry - ky, x + width, y + ry);
+        lineTo(x + width, y + height - ry);
+        curveTo(x + width, y + height - ry + ky, x + width - rx + kx, y + height, x + width - rx, y + height);
+        lineTo(x + rx, y + height);
+        curveTo(x + rx - kx, y + height, x, y + height - ry + ky, x, y + height - ry);
+        lineTo(x, y + ry);
+        curveTo(x, y + ry - ky, x + rx - kx, y, x + rx, y);
+        closePath();
+    }
+
+    public void appendEllipse(final double x, final double y, final double width, final double height) {
+        appendRoundRect(x, y, width, height, Math.max(width, height));
+    }
+
+    /**
+     * Adds the given path elements with absolute coordinates, e.g. the
+     * elements of the Path that Shape.subtract() returns.
+     * @param elements the path elements
+     */
+    public void appendPath(final List<PathElement> elements) {
+        for (PathElement element : elements) {
+            if (element instanceof MoveTo) {
+                final MoveTo moveTo = (MoveTo) element;
+                moveTo(moveTo.getX(), moveTo.getY());
+            } else if (element instanceof LineTo) {
+                final LineTo lineTo = (LineTo) element;
+                lineTo(lineTo.getX(), lineTo.getY());
+            } else if (element instanceof QuadCurveTo) {
+                final QuadCurveTo quadTo = (QuadCurveTo) element;
+                quadTo(quadTo.getControlX(), quadTo.getControlY(), quadTo.getX(), quadTo.getY());
+            } else if (element instanceof CubicCurveTo) {
+                final CubicCurveTo curveTo = (CubicCurveTo) element;
+                curveTo(curveTo.getControlX1(), curveTo.getControlY1(), curveTo.getControlX2(), curveTo.getControlY2(), curveTo.getX(), curveTo.getY());
+            } else if (element instanceof ClosePath) {
+                closePath();
+            } else {
+                throw new IllegalArgumentException("Unsupported path element " + element.getClass().getSimpleName());
+            }
+        }
+        closePath();
+    }
+
+    /**
+     * Fills the added paths with the non zero winding rule.
+     * @return the coverage of each pixel in the range 0 - 1
+     */
+    public float[] toMask() {
+        closePath();
+        final float[] mask = new float[width * height];
+        if (0 == edgeCount || 0 == width || 0 == height) { return mask; }
+
+        // Edges sorted by their top, the active edges of a row are the ones that overlap it
+        final Integer[] order = new Integer[edgeCount];
+        for (int i = 0 ; i < edgeCount ; i++) { order[i] = i; }
+        Arrays.sort(order, (a, b) -> Double.compare(getMinY(a), getMinY(b)));
+        final int[]    active      = new int[edgeCount];
+        final double[] crossingX   = new double[edgeCount];
+        final int[]    crossingDir = new int[edgeCount];
+        final float[]  row         = new float[width];
+        int            next        = 0;
+        int            activeCount = 0;
+        for (int y = 0 ; y < height ; y++) {
+            // Remove the edges above the row and add the edges that start in it
+            int count = 0;
+            for (int i = 0 ; i < activeCount ; i++) { if (getMaxY(active[i]) > y) { active[count++] = active[i]; } }
+            activeCount = count;
+            while (next < edgeCount && getMinY(order[next]) < y + 1) {
+                if (getMaxY(order[next]) > y) { active[activeCount++] = order[next]; }
+                next++;
+            }
+            if (0 == activeCount) { continue; }
+
+            Arrays.fill(row, 0);
+            boolean covered = false;
+            for (int s = 0 ; s < SUBSAMPLES ; s++) {
+                final double sampleY = y + (s + 0.5) / SUBSAMPLES;
+                int crossings = 0;
+                for (int i = 0 ; i < activeCount ; i++) {
+                    final int    e  = active[i] * 4;
+                    final double y0 = edges[e + 1];
+                    final double y1 = edges[e + 3];
+                    if ((y0 <= sampleY && sampleY < y1) || (y1 <= sampleY && sampleY < y0)) {
+                        final double x = edges[e] + (sampleY - y0) * (edges[e + 2] - edges[e]) / (y1 - y0);
+                        // Insertion sort, there are only a few crossings per sub scanline
+                        int j = crossings++;
+                        while (j > 0 && crossingX[j - 1] > x) {
+                            crossingX[j]   = crossingX[j - 1];
+                            crossingDir[j] = crossingDir[j - 1];
+                            j--;
+                        }
+                        crossingX[j]   = x;
+                        crossingDir[j] = y1 > y0 ? 1 : -1;
+                    }
+                }
+                int    winding = 0;
+                double spanX   = 0;
+                for (int i = 0 ; i < crossings ; i++) {
+                    final int before = winding;
+                    winding += crossingDir[i];
+                    if (0 == before && 0 != winding) {
+                        spanX = crossingX[i];
+                    } else if (0 != before && 0 == winding) {
+                        covered |= addSpan(row, spanX, crossingX[i]);
+                    }
+                }
+            }
+            if (!covered) { continue; }
+            final int offset = y * width;
+            for (int x = 0 ; x < width ; x++) { mask[offset + x] = Math.min(1f, row[x] / SUBSAMPLES); }
+        }
+        return mask;
+    }
+
+    private boolean addSpan(final float[] row, final double fromX, final double toX) {
+        final double x0 = Math.max(0, fromX);
+        final double x1 = Math.min(width, toX);
+        if (x1 <= x0) { return false; }
+        final int i0 = (int) x0;
+        final int i1 = (int) x1;
+        if (i0 == i1) {
+            row[i0] += x1 - x0;
+        } else {
+            row[i0] += i0 + 1 - x0;
+            for (int i = i0 + 1 ; i < i1 ; i++) { row[i] += 1; }
+            if (i1 < width) { row[i1] += x1 - i1; }
+        }
+        return true;
+    }
+
+    private void addEdge(final double x0, final double y0, final double x1, final double y1) {
+        if (y0 == y1) { return; }
+        if (edgeCount * 4 == edges.length) { edges = Arrays.copyOf(edges, edges.length * 2); }
+        final int e = edgeCount * 4;
+        edges[e]     = x0;
+        edges[e + 1] = y0;
+        edges[e + 2] = x1;
+        edges[e + 3] = y1;
+        edgeCount++;
+    }
+
+    private double getMinY(final int edge) { return Math.min(edges[edge * 4 + 1], edges[edge * 4 + 3]); }
+
+    private double getMaxY(final int edge) { return Math.max(edges[edge * 4 + 1], edges[edge * 4 + 3]); }
+
+    private static int getSegments(final double length) { return Math.max(1, Math.min(128, (int) Math.ceil(Math.sqrt(length / FLATNESS)))); }
+
+    private double tx(final double x) { return x * scaleX + translateX; }
+
+    private double ty(final double y) { return y * scaleY + translateY; }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.paint.Color;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Immutable set of colors that is shared by all controls of a user interface.
+ * The colors that are derived from the background color (pressed color,
+ * bright and dark shadow color etc.) are computed only once per background
+ * color and are shared between all themes and controls that use it.
+ * A theme can be applied to a whole scene graph at once, every control will
+ * be invalidated only once.
+ */
+public class NTheme {
+    private static final int                   MAX_PALETTES       = 256;
+    private static final Map<Color, Palette>   PALETTES           = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(final Map.Entry<Color, Palette> eldest) { return size() > MAX_PALETTES; }
+    };
+    public  static final NTheme                LIGHT              = new NTheme(Color.web("#e2e6e8"), Color.web("#6c737c"), Color.web("#236dee"));
+    public  static final NTheme                DARK               = new NTheme(Color.web("#2e2f33"), Color.web("#e5e8eb"), Color.web("#00fff1"));
+    public  static final NTheme                DEFAULT            = LIGHT;
+    private        final Color                 backgroundColor;
+    private        final Color                 textColor;
+    private        final Color                 selectedColor;
+    private        final Palette               palette;
+
+
+    // ******************** Constructors **************************************
+    public NTheme(final Color backgroundColor, final Color textColor, final Color selectedColor) {
+        this.backgroundColor = Objects.requireNonNull(backgroundColor);
+        this.textColor       = Objects.requireNonNull(textColor);
+        this.selectedColor   = Objects.requireNonNull(selectedColor);
+        this.palette         = getPalette(backgroundColor);
+    }
+
+
+    // ******************** Methods *******************************************
+    public Color getBackgroundColor() { return backgroundColor; }
+
+    public Color getTextColor() { return textColor; }
+
+    public Color getSelectedColor() { return selectedColor; }
+
+    public Palette getPalette() { return palette; }
+
+    public boolean isBright() { return palette.isBright(); }
+
+    /**
+     * Returns a new theme with the given background color and the text and
+     * selected color of this theme.
+     * @param backgroundColor the new background color
+     * @return a new theme with the given background color
+     */
+    public NTheme withBackgroundColor(final Color backgroundColor) { return new NTheme(backgroundColor, textColor, selectedColor); }
+
+    public NTheme withTextColor(final Color textColor) { return new NTheme(backgroundColor, textColor, selectedColor); }
+
+    public NTheme withSelectedColor(final Color selectedColor) { return new NTheme(backgroundColor, textColor, selectedColor); }
+
+    /**
+     * Applies this theme to all themeable nodes of the given scene.
+     * @param scene the scene
+     */
+    public void apply(final Scene scene) {
+        if (null == scene || null == scene.getRoot()) { return; }
+        apply(scene.getRoot());
+    }
+    /**
+     * Applies this theme to the given node and all its themeable descendants.
+     * Every control will only be invalidated once.
+     * @param node the root of the scene graph that should be themed
+     */
+    public void apply(final Node node) {
+        if (null == node) { return; }
+        if (node instanceof Themeable) { ((Themeable) node).setTheme(this); }
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) { apply(child); }
+        }
+    }
+
+    /**
+     * Returns the palette of derived colors for the given background color.
+     * Palettes are cached, so all controls with the same background color
+     * share the same palette instance.
+     * @param backgroundColor the background color
+     * @return the palette of derived colors for the given background color
+     */
+    public static Palette getPalette(final Color backgroundColor) {
+        synchronized (PALETTES) {
+            Palette palette = PALETTES.get(backgroundColor);
+            if (null == palette) {
+                palette = new Palette(backgroundColor);
+                PALETTES.put(backgroundColor, palette);
+            }
+            return palette;
+        }
+    }
+
+    @Override public boolean equals(final Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof NTheme)) { return false; }
+        final NTheme theme = (NTheme) o;
+        return backgroundColor.equals(theme.backgroundColor) &&
+               textColor.equals(theme.textColor) &&
+               selectedColor.equals(theme.selectedColor);
+    }
+
+    @Override public int hashCode() { return Objects.hash(backgroundColor, textColor, selectedColor); }
+
+
+    // ******************** Inner Classes *************************************
+    public static final class Palette {
+        private final Color   backgroundColor;
+        private final boolean bright;
+        private final Color   pressedColor;
+        private final Color   brightShadowColor;
+        private final Color   darkShadowColor;
+        private final Color   textBackgroundColor;
+
+
+        private Palette(final Color backgroundColor) {
+            final int argb = Helper.toArgb(backgroundColor);
+            this.backgroundColor     = backgroundColor;
+            this.bright              = Helper.isBright(argb);
+            this.pressedColor        = Helper.fromArgb(Helper.deriveArgb(argb, bright ? 1.0125 : 1.05));
+            this.brightShadowColor   = Helper.fromArgb(Helper.withOpacity(Helper.deriveArgb(argb, bright ? 1.1 : 1.3), bright ? 0.5 : 1.0));
+            this.darkShadowColor     = Helper.fromArgb(Helper.withOpacity(Helper.deriveArgb(argb, bright ? 0.9 : 0.7), bright ? 0.5 : 1.0));
+            this.textBackgroundColor = Helper.fromArgb(Helper.deriveArgb(argb, bright ? 0.99 : 1.2));
+        }
+
+
+        public Color getBackgroundColor() { return backgroundColor; }
+
+        public boolean isBright() { return bright; }
+
+        public Color getPressedColor() { return pressedColor; }
+
+        public Color getBrightShadowColor() { return brightShadowColor; }
+
+        public Color getDarkShadowColor() { return darkShadowColor; }
+
+        public Color getTextBackgroundColor() { return textBackgroundColor; }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Java Flight Recorder events of the controls.
+ * NRedraw and NResize are emitted by the RenderScheduler passes of each
+ * control, NEffectRebuild whenever the EffectCache has to create a new
+ * effect and NStateChange on pressed, selected and on changes.
+ * All events are disabled unless a recording enables them, e.g. with
+ * -XX:StartFlightRecording. Events are only created while they are enabled,
+ * so that the passes of the controls don't allocate anything without a recording.
+ */
+public class RenderEvents {
+    public  static final String    CATEGORY     = "Neumorphic";
+    private static final EventType REDRAW       = EventType.getEventType(NRedraw.class);
+    private static final EventType RESIZE       = EventType.getEventType(NResize.class);
+    private static final EventType STATE_CHANGE = EventType.getEventType(NStateChange.class);
+
+
+    // ******************** Constructors **************************************
+    private RenderEvents() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * @return true if a recording enables the NRedraw event
+     */
+    public static boolean isRedrawEnabled() { return REDRAW.isEnabled(); }
+
+    /**
+     * @return true if a recording enables the NResize event
+     */
+    public static boolean isResizeEnabled() { return RESIZE.isEnabled(); }
+
+    /**
+     * Emits an NStateChange event for the given boolean state property of a control.
+     * @param state the property that changed, its bean is the control
+     */
+    public static void stateChanged(final ReadOnlyBooleanProperty state) {
+        if (!STATE_CHANGE.isEnabled()) { return; }
+        final NStateChange event = new NStateChange();
+        event.controlClass = null == state.getBean() ? null : state.getBean().getClass();
+        event.property     = state.getName();
+        event.value        = state.get();
+        event.commit();
+    }
+
+
+    // ******************** Inner Classes *************************************
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class ControlEvent extends Event {
+        @Label("Control Class")
+        Class<?> controlClass;
+
+        @Label("Width")
+        double width;
+
+        @Label("Height")
+        double height;
+
+        @Label("Shape")
+        String shape;
+
+        @Label("Level Of Detail")
+        String levelOfDetail;
+
+
+        /**
+         * Sets the fields of the event, call it after end() and only if shouldCommit() returned true.
+         */
+        public void set(final Object control, final double width, final double height, final NShape shape, final LevelOfDetail levelOfDetail) {
+            this.controlClass  = control.getClass();
+            this.width         = width;
+            this.height        = height;
+            this.shape         = null == shape ? null : shape.name();
+            this.levelOfDetail = null == levelOfDetail ? null : levelOfDetail.name();
+        }
+    }
+
+    @Name("eu.hansolo.fx.neumorphic.NRedraw")
+    @Label("Neumorphic Redraw")
+    @Description("Redraw of the canvas of a control")
+    public static final class NRedraw extends ControlEvent {
+        public NRedraw() {}
+    }
+
+    @Name("eu.hansolo.fx.neumorphic.NResize")
+    @Label("Neumorphic Resize")
+    @Description("Resize of a control including the redraw of its canvas")
+    public static final class NResize extends ControlEvent {
+        public NResize() {}
+    }
+
+    @Name("eu.hansolo.fx.neumorphic.NEffectRebuild")
+    @Label("Neumorphic Effect Rebuild")
+    @Description("Creation of an effect that was not found in the EffectCache, the stack trace shows the control")
+    @Category(CATEGORY)
+    static final class NEffectRebuild extends Event {
+        @Label("Effect Type")
+        String effectType;
+
+        @Label("Blur Type")
+        String blurType;
+
+        @Label("Radius")
+        double radius;
+
+        @Label("Offset")
+        double offset;
+    }
+
+    @Name("eu.hansolo.fx.neumorphic.NStateChange")
+    @Label("Neumorphic State Change")
+    @Description("Change of the pressed, selected or on state of a control")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class NStateChange extends Event {
+        @Label("Control Class")
+        Class<?> controlClass;
+
+        @Label("Property")
+        String property;
+
+        @Label("Value")
+        boolean value;
+    }
+}
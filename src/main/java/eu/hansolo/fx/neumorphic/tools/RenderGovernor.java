@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+
+/**
+ * Global governor that lowers the rendering quality of all controls when the
+ * pulses of their scenes take longer than the frame budget.
+ * The duration of a pulse is measured from the start of the CSS and layout
+ * pass to the end of the redraws of the RenderScheduler. If the smoothed
+ * duration exceeds the budget for a number of pulses in a row, the quality is
+ * stepped down one level (FULL -> FAST -> REDUCED -> FLAT). The quality is only
+ * stepped up one level again when no pulse exceeded the budget for the recover
+ * delay, this hysteresis prevents the quality from oscillating.
+ * The governor is disabled by default, all methods have to be called on the
+ * FX application thread.
+ */
+public class RenderGovernor {
+    public  static final Duration        DEFAULT_BUDGET        = Duration.millis(25);
+    public  static final Duration        DEFAULT_RECOVER_DELAY = Duration.seconds(2);
+    private static final int             DEGRADE_PULSES        = 3;
+    private static final double          SMOOTHING             = 0.3;
+    private static       boolean         enabled               = false;
+    private static       long            budgetNanos           = (long) (DEFAULT_BUDGET.toMillis() * 1_000_000);
+    private static       Duration        recoverDelay          = DEFAULT_RECOVER_DELAY;
+    private static       LevelOfDetail   minLevel              = LevelOfDetail.FLAT;
+    private static       LevelOfDetail   level                 = LevelOfDetail.FULL;
+    private static       PauseTransition recover;
+    private static       long            pulseStart;
+    private static       double          averageNanos;
+    private static       int             overBudgetPulses;
+
+
+    // ******************** Constructors **************************************
+    private RenderGovernor() {}
+
+
+    // ******************** Methods *******************************************
+    public static boolean isEnabled() { return enabled; }
+    public static void setEnabled(final boolean enabled) {
+        RenderGovernor.enabled = enabled;
+        if (!enabled) {
+            if (null != recover) { recover.stop(); }
+            setLevel(LevelOfDetail.FULL);
+        }
+    }
+
+    public static Duration getBudget() { return Duration.millis(budgetNanos / 1_000_000.0); }
+    /**
+     * @param budget the max duration of the CSS, layout and redraw part of a pulse
+     */
+    public static void setBudget(final Duration budget) { budgetNanos = (long) (budget.toMillis() * 1_000_000); }
+
+    public static Duration getRecoverDelay() { return recoverDelay; }
+    public static void setRecoverDelay(final Duration recoverDelay) {
+        RenderGovernor.recoverDelay = recoverDelay;
+        if (null != recover) { recover.setDuration(recoverDelay); }
+    }
+
+    public static LevelOfDetail getMinLevel() { return minLevel; }
+    /**
+     * @param minLevel the lowest quality the governor will step down to
+     */
+    public static void setMinLevel(final LevelOfDetail minLevel) {
+        RenderGovernor.minLevel = minLevel;
+        if (level.ordinal() > minLevel.ordinal()) { setLevel(minLevel); }
+    }
+
+    /**
+     * @return the current max level of detail of all controls
+     */
+    public static LevelOfDetail getLevel() { return level; }
+
+    /**
+     * @return the smoothed duration of the last pulses in milliseconds
+     */
+    public static double getAverageMillis() { return averageNanos / 1_000_000.0; }
+
+    static void pulseStarted() {
+        if (enabled) { pulseStart = System.nanoTime(); }
+    }
+
+    static void pulseFinished() {
+        if (!enabled || 0 == pulseStart) { return; }
+        final long duration = System.nanoTime() - pulseStart;
+        pulseStart   = 0;
+        averageNanos = 0 == averageNanos ? duration : averageNanos + SMOOTHING * (duration - averageNanos);
+        if (averageNanos > budgetNanos) {
+            overBudgetPulses++;
+            if (overBudgetPulses >= DEGRADE_PULSES && level.ordinal() < minLevel.ordinal()) {
+                overBudgetPulses = 0;
+                averageNanos     = 0;
+                setLevel(LevelOfDetail.values()[level.ordinal() + 1]);
+            }
+            // Every pulse over budget restarts the recover delay
+            if (LevelOfDetail.FULL != level) { startRecover(); }
+        } else {
+            overBudgetPulses = 0;
+        }
+    }
+
+    private static void startRecover() {
+        if (null == recover) {
+            recover = new PauseTransition(recoverDelay);
+            recover.setOnFinished(e -> {
+                if (LevelOfDetail.FULL == level) { return; }
+                setLevel(LevelOfDetail.values()[level.ordinal() - 1]);
+            });
+        }
+        recover.playFromStart();
+    }
+
+    private static void setLevel(final LevelOfDetail level) {
+        if (RenderGovernor.level == level) { return; }
+        RenderGovernor.level = level;
+        if (LevelOfDetail.FULL != level) { startRecover(); }
+        RenderScheduler.invalidateAll();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Opt-in registry of render metrics of the controls.
+ * Counts the calls of resize(), redraw() and layoutChildren(), records their
+ * total and maximum duration and counts the effects that were allocated by
+ * the EffectCache while a control was measured. The metrics are aggregated
+ * per class and, if enabled, per instance.
+ * The metrics are disabled by default, in that case start() returns 0 and
+ * record() returns immediately, so the only overhead is one field read.
+ * Measurements are taken on the FX application thread, the results can be
+ * read from any thread.
+ */
+public class RenderMetrics {
+    public enum Phase {
+        RESIZE("resize"), REDRAW("redraw"), LAYOUT("layout");
+
+        private final String name;
+
+        Phase(final String name) { this.name = name; }
+
+        public String getName() { return name; }
+    }
+
+    private static final    Map<Class<?>, Stats> CLASS_STATS    = new ConcurrentHashMap<>();
+    private static final    Map<Node, Stats>     INSTANCE_STATS = Collections.synchronizedMap(new WeakHashMap<>());
+    private static volatile boolean              enabled        = false;
+    private static volatile boolean              perInstance    = false;
+    private static          Node                 current;
+
+
+    // ******************** Constructors **************************************
+    private RenderMetrics() {}
+
+
+    // ******************** Methods *******************************************
+    public static boolean isEnabled() { return enabled; }
+    public static void setEnabled(final boolean enabled) { RenderMetrics.enabled = enabled; }
+
+    public static boolean isPerInstance() { return perInstance; }
+    /**
+     * @param perInstance if true the metrics are also recorded per control instance
+     */
+    public static void setPerInstance(final boolean perInstance) { RenderMetrics.perInstance = perInstance; }
+
+    /**
+     * Starts a measurement of the given control.
+     * @param node the control
+     * @return the start time in nanoseconds, 0 if the metrics are disabled
+     */
+    public static long start(final Node node) {
+        if (!enabled) { return 0; }
+        current = node;
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a measurement that was started with start().
+     * @param node  the control
+     * @param phase the measured phase
+     * @param start the value returned by start()
+     */
+    public static void record(final Node node, final Phase phase, final long start) {
+        if (0 == start) { return; }
+        final long nanos = System.nanoTime() - start;
+        current = null;
+        getOrCreate(node.getClass()).record(phase, nanos);
+        if (perInstance) { getOrCreate(node).record(phase, nanos); }
+    }
+
+    /**
+     * Called by the EffectCache when it had to create a new effect, the
+     * allocation is counted for the control that is currently measured.
+     */
+    public static void effectAllocated() {
+        if (!enabled) { return; }
+        final Node node = current;
+        if (null == node) { return; }
+        getOrCreate(node.getClass()).effectAllocated();
+        if (perInstance) { getOrCreate(node).effectAllocated(); }
+    }
+
+    /**
+     * @param type the class of the controls
+     * @return the aggregated metrics of all controls of the given class, null if nothing was recorded
+     */
+    public static Stats getStats(final Class<?> type) { return CLASS_STATS.get(type); }
+
+    /**
+     * @param node the control
+     * @return the metrics of the given control, null if nothing was recorded per instance
+     */
+    public static Stats getStats(final Node node) { return INSTANCE_STATS.get(node); }
+
+    public static Map<Class<?>, Stats> getClassStats() { return new LinkedHashMap<>(CLASS_STATS); }
+
+    public static Map<Node, Stats> getInstanceStats() {
+        synchronized (INSTANCE_STATS) { return new LinkedHashMap<>(INSTANCE_STATS); }
+    }
+
+    public static void reset() {
+        CLASS_STATS.clear();
+        INSTANCE_STATS.clear();
+    }
+
+    /**
+     * Exports all recorded metrics, the classes are sorted by their total
+     * render time, the instances are identified by their id or identity hash.
+     * @return the metrics as JSON string
+     */
+    public static String toJson() {
+        final StringBuilder json = new StringBuilder("{\"classes\":{");
+        final List<Entry<Class<?>, Stats>> classStats = new ArrayList<>(CLASS_STATS.entrySet());
+        classStats.sort((e1, e2) -> Long.compare(e2.getValue().getTotalNanos(), e1.getValue().getTotalNanos()));
+        for (int i = 0 ; i < classStats.size() ; i++) {
+            if (i > 0) { json.append(','); }
+            json.append('"').append(classStats.get(i).getKey().getName()).append("\":").append(classStats.get(i).getValue().toJson());
+        }
+        json.append("},\"instances\":{");
+        final Map<Node, Stats> instanceStats = getInstanceStats();
+        boolean first = true;
+        for (Entry<Node, Stats> entry : instanceStats.entrySet()) {
+            if (!first) { json.append(','); }
+            first = false;
+            json.append('"').append(getInstanceName(entry.getKey())).append("\":").append(entry.getValue().toJson());
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String getInstanceName(final Node node) {
+        final String id   = node.getId();
+        final String name = node.getClass().getSimpleName() + (null == id ? "@" + Integer.toHexString(System.identityHashCode(node)) : "#" + id);
+        return name.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static Stats getOrCreate(final Class<?> type) { return CLASS_STATS.computeIfAbsent(type, t -> new Stats()); }
+
+    private static Stats getOrCreate(final Node node) {
+        synchronized (INSTANCE_STATS) { return INSTANCE_STATS.computeIfAbsent(node, n -> new Stats()); }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public static final class Stats {
+        private final long[] calls      = new long[Phase.values().length];
+        private final long[] totalNanos = new long[Phase.values().length];
+        private final long[] maxNanos   = new long[Phase.values().length];
+        private       long   effectAllocations;
+
+
+        private Stats() {}
+
+
+        private synchronized void record(final Phase phase, final long nanos) {
+            final int index = phase.ordinal();
+            calls[index]++;
+            totalNanos[index] += nanos;
+            if (nanos > maxNanos[index]) { maxNanos[index] = nanos; }
+        }
+
+        private synchronized void effectAllocated() { effectAllocations++; }
+
+        public synchronized long getCalls(final Phase phase) { return calls[phase.ordinal()]; }
+
+        public synchronized long getTotalNanos(final Phase phase) { return totalNanos[phase.ordinal()]; }
+        public synchronized long getTotalNanos() {
+            long sum = 0;
+            for (long nanos : totalNanos) { sum += nanos; }
+            return sum;
+        }
+
+        public synchronized long getMaxNanos(final Phase phase) { return maxNanos[phase.ordinal()]; }
+
+        public synchronized double getAverageNanos(final Phase phase) {
+            final int index = phase.ordinal();
+            return 0 == calls[index] ? 0 : (double) totalNanos[index] / calls[index];
+        }
+
+        public synchronized long getEffectAllocations() { return effectAllocations; }
+
+        public synchronized String toJson() {
+            final StringBuilder json = new StringBuilder("{");
+            for (Phase phase : Phase.values()) {
+                final int index = phase.ordinal();
+                json.append('"').append(phase.getName()).append("\":{")
+                    .append("\"calls\":").append(calls[index])
+                    .append(",\"totalNanos\":").append(totalNanos[index])
+                    .append(",\"maxNanos\":").append(maxNanos[index])
+                    .append("},");
+            }
+            return json.append("\"effectAllocations\":").append(effectAllocations).append('}').toString();
+        }
+
+        @Override public String toString() { return toJson(); }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2020 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.input.ScrollEvent;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+
+/**
+ * Coalesces redraw and resize requests of the controls to one execution per
+ * JavaFX pulse. Controls mark themselves dirty and the scheduler runs the
+ * pending work once after the layout pass of the next pulse (post layout
+ * pulse listener of the scene), so that a burst of property changes only
+ * leads to one repaint of the canvas.
+ * Requests that are made between beginUpdate() and endUpdate() of a handle
+ * are deferred until the outermost endUpdate() and executed at once.
+ * Before a control is rendered the scheduler evaluates its DetailPolicy, while
+ * a scene scrolls (or notifyMotion() was called) and for some time after,
+ * controls are rendered with reduced detail. Once the motion settled all
+ * controls that were rendered with less than full detail are rendered again.
+ * Controls that were rendered flat because they were clipped out are checked
+ * again after each layout pass and rendered again once they became visible.
+ * The level of detail is limited by the quality of the RenderGovernor.
+ * Requests of controls that are not part of a scene are only held weakly
+ * and are queued once the control is added to a scene (or flush() is called).
+ * Requesting and executing the work of controls in a scene doesn't allocate,
+ * so animations that redraw on every pulse don't create garbage.
+ * All methods have to be called on the FX application thread.
+ */
+public class RenderScheduler {
+    private static final int               MAX_PASSES  = 8;
+    private static       List<RenderHandle> dirty      = new ArrayList<>();
+    private static       List<RenderHandle> running    = new ArrayList<>();
+    private static       int               queuedCount;
+    private static       boolean           flushing;
+    private static final Set<RenderHandle> DETACHED    = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Set<Scene>        SCENES      = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Runnable          FLUSH       = () -> {
+        checkClipped();
+        flushDirty();
+        RenderGovernor.pulseFinished();
+    };
+    private static final Runnable          PULSE_START = RenderGovernor::pulseStarted;
+    private static final Set<RenderHandle> HANDLES     = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Set<RenderHandle> DEGRADED    = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Set<RenderHandle> CLIPPED     = Collections.newSetFromMap(new WeakHashMap<>());
+    private static       Duration          settleDelay = Duration.millis(200);
+    private static       PauseTransition   settle;
+    private static       boolean           inMotion;
+
+
+    // ******************** Constructors **************************************
+    private RenderScheduler() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Registers a control at the scheduler.
+     * @param node   the control
+     * @param resize the resize method of the control (recalculates sizes, effects and redraws)
+     * @param redraw the redraw method of the control
+     * @return the handle that is used to request a resize or redraw of the control
+     */
+    public static RenderHandle register(final Node node, final Runnable resize, final Runnable redraw) {
+        final RenderHandle handle = new RenderHandle(node, resize, redraw);
+        HANDLES.add(handle);
+        node.sceneProperty().addListener((o, ov, nv) -> {
+            if (null == nv) {
+                if (handle.queued) {
+                    dequeue(handle);
+                    dirty.remove(handle);
+                    DETACHED.add(handle);
+                }
+            } else if (DETACHED.remove(handle) && !handle.isUpdating()) {
+                queue(handle);
+                schedule(nv);
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Executes all pending requests immediately.
+     * Normally this is done automatically once per pulse, call this method
+     * only for controls that are not part of a shown scene.
+     */
+    public static void flush() {
+        if (!DETACHED.isEmpty()) {
+            for (RenderHandle handle : DETACHED) { queue(handle); }
+            DETACHED.clear();
+        }
+        flushDirty();
+    }
+
+    public static int getPendingCount() { return queuedCount + DETACHED.size(); }
+
+    private static void flushDirty() {
+        // Handles that are requested while a pass runs are executed in the next pass of the running flush
+        if (flushing) { return; }
+        flushing = true;
+        try {
+            int passes = 0;
+            while (!dirty.isEmpty() && passes < MAX_PASSES) {
+                // The two lists are swapped instead of copied, so that a flush doesn't allocate
+                final List<RenderHandle> handles = dirty;
+                dirty   = running;
+                running = handles;
+                for (int i = 0 ; i < handles.size() ; i++) {
+                    final RenderHandle handle = handles.get(i);
+                    // Handles that were executed by endUpdate() are still in the list
+                    if (!handle.queued) { continue; }
+                    dequeue(handle);
+                    handle.run();
+                }
+                handles.clear();
+                passes++;
+            }
+        } finally {
+            flushing = false;
+        }
+    }
+
+    private static boolean queue(final RenderHandle handle) {
+        if (handle.queued) { return false; }
+        handle.queued = true;
+        queuedCount++;
+        dirty.add(handle);
+        return true;
+    }
+
+    private static void dequeue(final RenderHandle handle) {
+        handle.queued = false;
+        queuedCount--;
+    }
+
+    /**
+     * Requests a resize of all registered controls, e.g. after the quality of the RenderGovernor changed
+     */
+    public static void invalidateAll() {
+        for (RenderHandle handle : new ArrayList<>(HANDLES)) { handle.requestResize(); }
+    }
+
+    /**
+     * Marks the user interface as being in motion (e.g. a custom scroll or an
+     * animation that moves controls), controls that are rendered until the
+     * motion settled will be rendered with reduced detail.
+     * Scroll events of the scenes of the controls are detected automatically.
+     */
+    public static void notifyMotion() {
+        if (null == settle) {
+            settle = new PauseTransition(settleDelay);
+            settle.setOnFinished(e -> settle());
+        }
+        inMotion = true;
+        settle.playFromStart();
+    }
+
+    public static boolean isInMotion() { return inMotion; }
+
+    public static Duration getSettleDelay() { return settleDelay; }
+    public static void setSettleDelay(final Duration settleDelay) {
+        RenderScheduler.settleDelay = settleDelay;
+        if (null != settle) { settle.setDuration(settleDelay); }
+    }
+
+    private static void settle() {
+        inMotion = false;
+        final List<RenderHandle> handles = new ArrayList<>(DEGRADED);
+        DEGRADED.clear();
+        for (RenderHandle handle : handles) { handle.requestResize(); }
+    }
+
+    private static void checkClipped() {
+        if (CLIPPED.isEmpty()) { return; }
+        for (RenderHandle handle : new ArrayList<>(CLIPPED)) {
+            if (null == handle.node.getScene() || handle.isDirty()) { continue; }
+            if (!DetailPolicy.isClippedOut(handle.node)) { handle.requestResize(); }
+        }
+    }
+
+    private static void schedule(final Scene scene) {
+        if (null != scene && !SCENES.contains(scene)) {
+            scene.addPreLayoutPulseListener(PULSE_START);
+            scene.addPostLayoutPulseListener(FLUSH);
+            scene.addEventFilter(ScrollEvent.ANY, e -> notifyMotion());
+            SCENES.add(scene);
+        }
+        Platform.requestNextPulse();
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public static final class RenderHandle {
+        private static final int           REDRAW = 1;
+        private static final int           RESIZE = 2;
+        private        final Node          node;
+        private        final Runnable      resize;
+        private        final Runnable      redraw;
+        private              int           dirty;
+        private              int           updateDepth;
+        private              boolean       queued;
+        private              DetailPolicy  detailPolicy;
+        private              LevelOfDetail levelOfDetail;
+
+
+        private RenderHandle(final Node node, final Runnable resize, final Runnable redraw) {
+            this.node          = node;
+            this.resize        = resize;
+            this.redraw        = redraw;
+            this.dirty         = 0;
+            this.updateDepth   = 0;
+            this.levelOfDetail = LevelOfDetail.FULL;
+        }
+
+
+        /**
+         * Marks the control as dirty, its canvas will be repainted once in the next pulse
+         */
+        public void requestRedraw() { mark(REDRAW); }
+
+        /**
+         * Marks the control as dirty, its sizes and effects will be recalculated
+         * and its canvas will be repainted once in the next pulse
+         */
+        public void requestResize() { mark(RESIZE); }
+
+        public boolean isDirty() { return 0 != dirty; }
+
+        /**
+         * Defers all requests until the outermost call of endUpdate()
+         */
+        public void beginUpdate() { updateDepth++; }
+
+        /**
+         * Executes all requests that were made since the outermost call of
+         * beginUpdate() once and immediately
+         */
+        public void endUpdate() {
+            if (0 == updateDepth) { throw new IllegalStateException("endUpdate() called without beginUpdate()"); }
+            updateDepth--;
+            if (0 == updateDepth && isDirty()) {
+                if (queued) { dequeue(this); }
+                DETACHED.remove(this);
+                run();
+            }
+        }
+
+        public boolean isUpdating() { return updateDepth > 0; }
+
+        /**
+         * @return the level of detail the control has to use for the current resize or redraw
+         */
+        public LevelOfDetail getLevelOfDetail() { return levelOfDetail; }
+
+        /**
+         * @return the policy of the control or null if the default policy is used
+         */
+        public DetailPolicy getDetailPolicy() { return detailPolicy; }
+        public void setDetailPolicy(final DetailPolicy detailPolicy) {
+            this.detailPolicy = detailPolicy;
+            requestResize();
+        }
+
+        private void mark(final int flag) {
+            dirty |= flag;
+            if (updateDepth > 0) { return; }
+            final Scene scene = node.getScene();
+            if (null == scene) {
+                // Queued by the scene listener once the control is part of a scene
+                DETACHED.add(this);
+            } else if (queue(this)) {
+                schedule(scene);
+            }
+        }
+
+        private void run() {
+            if (updateDepth > 0) { return; }
+            int flags = dirty;
+            dirty = 0;
+            final LevelOfDetail level = (null == detailPolicy ? DetailPolicy.getDefault() : detailPolicy).evaluate(node, inMotion).min(RenderGovernor.getLevel());
+            if (level != levelOfDetail) {
+                // The sprites and effects of the control depend on the level of detail
+                levelOfDetail = level;
+                flags |= RESIZE;
+            }
+            if (LevelOfDetail.FULL == level) {
+                DEGRADED.remove(this);
+            } else {
+                DEGRADED.add(this);
+            }
+            // No request is made when a clipped out control scrolls into view, so it will be checked after each layout pass
+            if (LevelOfDetail.FLAT == level && DetailPolicy.isClippedOut(node)) {
+                CLIPPED.add(this);
+            } else {
+                CLIPPED.remove(this);
+            }
+            if (0 != (flags & RESIZE)) {
+                resize.run();
+            } else if (0 != (flags & REDRAW)) {
+                redraw.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.paint.Color;
+
+import java.util.Objects;
+
+
+/**
+ * Immutable description of a control that will be rendered by the BatchRenderer.
+ * A spec describes the shape, size and colors of the control, its style
+ * (EMBOSSED, SUNKEN or null for flat), its pressed and selected state and
+ * its text. The colors default to the ones of NTheme.DEFAULT.
+ */
+public class RenderSpec {
+    private final NShape  shape;
+    private final double  width;
+    private final double  height;
+    private final Color   backgroundColor;
+    private final Color   textColor;
+    private final Color   selectedColor;
+    private final NStyle  style;
+    private final boolean pressed;
+    private final boolean selected;
+    private final String  text;
+    private final double  fontSize;
+    private final double  scale;
+
+
+    // ******************** Constructors **************************************
+    public RenderSpec(final NShape shape, final double width, final double height) {
+        this(shape, width, height, NTheme.DEFAULT.getBackgroundColor(), NTheme.DEFAULT.getTextColor(), NTheme.DEFAULT.getSelectedColor(), NStyle.EMBOSSED, false, false, "", 10, 1);
+    }
+    public RenderSpec(final NShape shape, final double width, final double height, final Color backgroundColor, final Color textColor, final Color selectedColor,
+                      final NStyle style, final boolean pressed, final boolean selected, final String text, final double fontSize, final double scale) {
+        this.shape           = Objects.requireNonNull(shape);
+        this.width           = width;
+        this.height          = height;
+        this.backgroundColor = Objects.requireNonNull(backgroundColor);
+        this.textColor       = Objects.requireNonNull(textColor);
+        this.selectedColor   = Objects.requireNonNull(selectedColor);
+        this.style           = style;
+        this.pressed         = pressed;
+        this.selected        = selected;
+        this.text            = null == text ? "" : text;
+        this.fontSize        = fontSize;
+        this.scale           = scale;
+    }
+
+
+    // ******************** Methods *******************************************
+    public NShape getShape() { return shape; }
+
+    public double getWidth() { return width; }
+
+    public double getHeight() { return height; }
+
+    public Color getBackgroundColor() { return backgroundColor; }
+
+    public Color getTextColor() { return textColor; }
+
+    public Color getSelectedColor() { return selectedColor; }
+
+    public NStyle getStyle() { return style; }
+
+    public boolean isPressed() { return pressed; }
+
+    public boolean isSelected() { return selected; }
+
+    public String getText() { return text; }
+
+    public double getFontSize() { return fontSize; }
+
+    public double getScale() { return scale; }
+
+    /**
+     * @return the width of the rendered image in pixels, circular shapes are rendered square
+     */
+    public int getPixelWidth() { return (int) Math.ceil((NShape.CIRCULAR == shape ? Math.min(width, height) : width) * scale); }
+
+    /**
+     * @return the height of the rendered image in pixels, circular shapes are rendered square
+     */
+    public int getPixelHeight() { return (int) Math.ceil((NShape.CIRCULAR == shape ? Math.min(width, height) : height) * scale); }
+
+    public RenderSpec withShape(final NShape shape) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withSize(final double width, final double height) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withTheme(final NTheme theme) { return new RenderSpec(shape, width, height, theme.getBackgroundColor(), theme.getTextColor(), theme.getSelectedColor(), style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withBackgroundColor(final Color backgroundColor) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withTextColor(final Color textColor) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withSelectedColor(final Color selectedColor) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withStyle(final NStyle style) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withPressed(final boolean pressed) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withSelected(final boolean selected) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withText(final String text) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withFontSize(final double fontSize) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    public RenderSpec withScale(final double scale) { return new RenderSpec(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    @Override public boolean equals(final Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof RenderSpec)) { return false; }
+        final RenderSpec spec = (RenderSpec) o;
+        return Double.compare(spec.width, width) == 0 &&
+               Double.compare(spec.height, height) == 0 &&
+               Double.compare(spec.fontSize, fontSize) == 0 &&
+               Double.compare(spec.scale, scale) == 0 &&
+               pressed == spec.pressed &&
+               selected == spec.selected &&
+               shape == spec.shape &&
+               style == spec.style &&
+               backgroundColor.equals(spec.backgroundColor) &&
+               textColor.equals(spec.textColor) &&
+               selectedColor.equals(spec.selectedColor) &&
+               text.equals(spec.text);
+    }
+
+    @Override public int hashCode() { return Objects.hash(shape, width, height, backgroundColor, textColor, selectedColor, style, pressed, selected, text, fontSize, scale); }
+
+    @Override public String toString() {
+        return "RenderSpec{" + shape + " " + width + "x" + height + " @" + scale + ", style=" + style + ", pressed=" + pressed + ", selected=" + selected + ", text='" + text + "'}";
+    }
+}
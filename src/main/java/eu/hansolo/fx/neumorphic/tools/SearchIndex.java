@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+
+/**
+ * Text index for large lists of items that supports prefix and substring
+ * search. The index is built incrementally in chunks on a background thread,
+ * searches run in the background too and only search the part of the items
+ * that is already indexed. A new search cancels the running one and if the
+ * new query extends the last query only the last result and the items that
+ * were indexed since the last search are searched again.
+ * Results contain prefix matches first, followed by substring matches.
+ */
+public class SearchIndex<T> {
+    public  static final int                DEFAULT_CHUNK_SIZE = 4096;
+    private static final int                CANCEL_CHECK_MASK  = 0x3FF;
+    private static final ExecutorService    DEFAULT_EXECUTOR   = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "NSearchIndex");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private        final Function<T, String> toText;
+    private        final Executor            executor;
+    private        final AtomicInteger       buildGeneration;
+    private        final AtomicInteger       searchGeneration;
+    private              Object[]            items;
+    private              String[]            keys;
+    private              int                 itemCount;
+    private volatile     int                 indexedCount;
+    private              String              lastQuery;
+    private              int[]               lastResult;
+    private              int                 lastCount;
+
+
+    // ******************** Constructors **************************************
+    public SearchIndex(final Function<T, String> toText) {
+        this(toText, DEFAULT_EXECUTOR);
+    }
+    public SearchIndex(final Function<T, String> toText, final Executor executor) {
+        this.toText           = Objects.requireNonNull(toText);
+        this.executor         = null == executor ? DEFAULT_EXECUTOR : executor;
+        this.buildGeneration  = new AtomicInteger();
+        this.searchGeneration = new AtomicInteger();
+        this.items            = new Object[0];
+        this.keys             = new String[0];
+        this.itemCount        = 0;
+        this.indexedCount     = 0;
+    }
+
+
+    // ******************** Methods *******************************************
+    /**
+     * @return the shared pool of daemon threads that is used if no executor was given
+     */
+    public static Executor getDefaultExecutor() { return DEFAULT_EXECUTOR; }
+
+    /**
+     * Replaces all items of the index, a running build will be cancelled
+     * @param items the new items
+     */
+    public void setItems(final List<? extends T> items) {
+        buildGeneration.incrementAndGet();
+        synchronized (this) {
+            this.items        = new Object[0];
+            this.keys         = new String[0];
+            this.itemCount    = 0;
+            this.indexedCount = 0;
+            this.lastQuery    = null;
+            this.lastResult   = null;
+            this.lastCount    = 0;
+        }
+        addItems(items);
+    }
+
+    /**
+     * Appends the given items to the index, the keys of the items will be
+     * computed in the background.
+     * @param newItems the items to append
+     */
+    public void addItems(final List<? extends T> newItems) {
+        if (null == newItems || newItems.isEmpty()) { return; }
+        final Object[] batch = newItems.toArray();
+        final int      generation;
+        final int      offset;
+        synchronized (this) {
+            generation = buildGeneration.get();
+            offset     = itemCount;
+            if (itemCount + batch.length > items.length) {
+                final int capacity = Math.max(itemCount + batch.length, items.length * 2);
+                items = Arrays.copyOf(items, capacity);
+                keys  = Arrays.copyOf(keys, capacity);
+            }
+            System.arraycopy(batch, 0, items, itemCount, batch.length);
+            itemCount += batch.length;
+            lastQuery  = null;
+            lastResult = null;
+            lastCount  = 0;
+        }
+        executor.execute(() -> build(generation, offset, batch));
+    }
+
+    public int getItemCount() {
+        synchronized (this) { return itemCount; }
+    }
+
+    public int getIndexedCount() { return indexedCount; }
+
+    public boolean isComplete() { return indexedCount == getItemCount(); }
+
+    /**
+     * Searches the already indexed items for the given query in the background.
+     * Calling search again cancels the returned future if it is not yet done.
+     * @param query the text to search for (case insensitive), empty or null returns all indexed items
+     * @return a future that will be completed with the matching items
+     */
+    public CompletableFuture<List<T>> search(final String query) {
+        final int                       generation = searchGeneration.incrementAndGet();
+        final CompletableFuture<List<T>> future    = new CompletableFuture<>();
+        final String                    text       = null == query ? "" : query.toLowerCase(Locale.ROOT);
+        executor.execute(() -> {
+            try {
+                future.complete(find(text, generation));
+            } catch (CancellationException e) {
+                future.cancel(false);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    public void cancel() {
+        buildGeneration.incrementAndGet();
+        searchGeneration.incrementAndGet();
+    }
+
+    private void build(final int generation, final int offset, final Object[] batch) {
+        for (int start = 0 ; start < batch.length ; start += DEFAULT_CHUNK_SIZE) {
+            final int      end   = Math.min(batch.length, start + DEFAULT_CHUNK_SIZE);
+            final String[] chunk = new String[end - start];
+            for (int i = start ; i < end ; i++) {
+                @SuppressWarnings("unchecked") final T item = (T) batch[i];
+                final String text = null == item ? null : toText.apply(item);
+                chunk[i - start] = null == text ? "" : text.toLowerCase(Locale.ROOT);
+            }
+            synchronized (this) {
+                if (generation != buildGeneration.get()) { return; }
+                System.arraycopy(chunk, 0, keys, offset + start, chunk.length);
+                // Batches are built concurrently, so only advance over the items that are indexed without a gap
+                int count = indexedCount;
+                while (count < itemCount && null != keys[count]) { count++; }
+                indexedCount = count;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> find(final String query, final int generation) {
+        final Object[] currentItems;
+        final String[] currentKeys;
+        final int      count;
+        final int[]    candidates;
+        final int      start;
+        synchronized (this) {
+            currentItems = items;
+            currentKeys  = keys;
+            count        = indexedCount;
+            candidates   = null != lastQuery && !lastQuery.isEmpty() && query.startsWith(lastQuery) && null != lastResult ? lastResult : null;
+            start        = null == candidates ? 0 : lastCount;
+        }
+
+        // The last result only covers the items that were indexed at that time, the items indexed since then are searched too
+        final int   cachedCount    = null == candidates ? 0 : candidates.length;
+        final int   candidateCount = cachedCount + count - start;
+        final int[] prefixMatches  = new int[candidateCount];
+        final int[] otherMatches   = new int[candidateCount];
+        int         prefixCount    = 0;
+        int         otherCount     = 0;
+        for (int c = 0 ; c < candidateCount ; c++) {
+            if ((c & CANCEL_CHECK_MASK) == 0 && generation != searchGeneration.get()) { throw new CancellationException(); }
+            final int    i   = c < cachedCount ? candidates[c] : start + c - cachedCount;
+            final String key = currentKeys[i];
+            if (query.isEmpty() || key.startsWith(query)) {
+                prefixMatches[prefixCount++] = i;
+            } else if (key.contains(query)) {
+                otherMatches[otherCount++] = i;
+            }
+        }
+
+        final int[]   result  = new int[prefixCount + otherCount];
+        System.arraycopy(prefixMatches, 0, result, 0, prefixCount);
+        System.arraycopy(otherMatches, 0, result, prefixCount, otherCount);
+        Arrays.sort(result, prefixCount, result.length);
+        final List<T> matches = new ArrayList<>(result.length);
+        for (int i : result) { matches.add((T) currentItems[i]); }
+
+        synchronized (this) {
+            // Don't cache the result if the items were replaced during the search
+            if (generation == searchGeneration.get() && currentKeys == keys) {
+                lastQuery  = query;
+                lastResult = result;
+                lastCount  = count;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.scene.paint.Color;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Pure Java rasterizer for the neumorphic double shadow (bright shadow up-left,
+ * dark shadow down-right) that works on any thread.
+ * The shape is given as alpha mask (one float per pixel in the range 0 - 1),
+ * the shadows are composited into a buffer of premultiplied ARGB pixels. The
+ * blur uses two separable box blur passes like BlurType.TWO_PASS_BOX and the
+ * spread / choke of 0.5 that the EffectCache uses for the shadows.
+ * All work is done on primitive arrays with two scratch arrays per shadow.
+ * Images with more pixels than the parallel threshold are split into bands of
+ * rows (columns for the vertical pass) that are processed in the common
+ * ForkJoinPool, or in the pool of the calling task.
+ */
+public class ShadowRasterizer {
+    public  static final int    DEFAULT_PARALLEL_THRESHOLD = 256 * 256;
+    private static final int    PASSES                     = 2;
+    private static final double SPREAD                     = 0.5;
+    private static final int    MIN_LINES                  = 16;
+    private static       int    parallelThreshold          = DEFAULT_PARALLEL_THRESHOLD;
+
+
+    // ******************** Constructors **************************************
+    private ShadowRasterizer() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns a new buffer that only contains the shadows of the given shape.
+     * @see #drawShadow(int[], float[], int, int, NStyle, double, double, int, int)
+     */
+    public static int[] createShadow(final float[] mask, final int width, final int height, final NStyle style, final double radius, final double offset, final Color bright, final Color dark) {
+        final int[] pixels = new int[width * height];
+        drawShadow(pixels, mask, width, height, style, radius, offset, Helper.toArgb(bright), Helper.toArgb(dark));
+        return pixels;
+    }
+
+    /**
+     * Composites the double shadow of the given shape into the given pixels.
+     * EMBOSSED draws the outer shadows, they have to be drawn before the shape
+     * is filled. SUNKEN draws the inner shadows clipped to the shape, they have
+     * to be drawn after the shape was filled.
+     * @param pixels the premultiplied ARGB pixels with the size width x height
+     * @param mask   the alpha of the shape
+     * @param width  the width in pixels
+     * @param height the height in pixels
+     * @param style  EMBOSSED or SUNKEN, null draws nothing
+     * @param radius the radius of the shadows in pixels
+     * @param offset the offset of the shadows in pixels
+     * @param bright the ARGB color of the bright shadow (top left)
+     * @param dark   the ARGB color of the dark shadow (bottom right)
+     */
+    public static void drawShadow(final int[] pixels, final float[] mask, final int width, final int height, final NStyle style, final double radius, final double offset,
+                                  final int bright, final int dark) {
+        if (null == style || width <= 0 || height <= 0) { return; }
+        final float[] layer  = new float[width * height];
+        final float[] buffer = new float[width * height];
+        final int     delta  = (int) Math.round(offset);
+        switch (style) {
+            case EMBOSSED:
+                drawLayer(pixels, mask, layer, buffer, width, height, -delta, false, radius, bright);
+                drawLayer(pixels, mask, layer, buffer, width, height, delta, false, radius, dark);
+                break;
+            case SUNKEN:
+                drawLayer(pixels, mask, layer, buffer, width, height, delta, true, radius, dark);
+                drawLayer(pixels, mask, layer, buffer, width, height, -delta, true, radius, bright);
+                break;
+        }
+    }
+
+    /**
+     * Blurs the given alpha values in place with two box blur passes.
+     * @param alpha  the alpha values with the size width x height
+     * @param width  the width in pixels
+     * @param height the height in pixels
+     * @param radius the blur radius in pixels
+     */
+    public static void blur(final float[] alpha, final int width, final int height, final double radius) {
+        blur(alpha, new float[alpha.length], width, height, radius);
+    }
+
+    /**
+     * Draws the given color with the given alpha values over the premultiplied ARGB pixels.
+     * @param pixels the premultiplied ARGB pixels
+     * @param alpha  the alpha values with the same size as the pixels
+     * @param argb   the (not premultiplied) ARGB color
+     */
+    public static void composite(final int[] pixels, final float[] alpha, final int argb) {
+        forLines(pixels.length, pixels.length, (from, to) -> composite(pixels, alpha, argb, from, to));
+    }
+
+    public static int getParallelThreshold() { return parallelThreshold; }
+    /**
+     * @param parallelThreshold the number of pixels from which on the work is split across worker threads
+     */
+    public static void setParallelThreshold(final int parallelThreshold) { ShadowRasterizer.parallelThreshold = Helper.clamp(1, Integer.MAX_VALUE, parallelThreshold); }
+
+    // Shifts the (inverted) mask into the layer, blurs and spreads it and composites it with the given color
+    private static void drawLayer(final int[] pixels, final float[] mask, final float[] layer, final float[] buffer, final int width, final int height, final int delta,
+                                  final boolean inner, final double radius, final int argb) {
+        forLines(height, width * height, (from, to) -> shift(mask, layer, width, height, delta, inner, from, to));
+        blur(layer, buffer, width, height, radius);
+        final float factor = (float) (1.0 / (1.0 - SPREAD));
+        forLines(height, width * height, (from, to) -> {
+            for (int i = from * width, end = to * width ; i < end ; i++) {
+                final float a = Math.min(1f, layer[i] * factor);
+                layer[i] = inner ? a * mask[i] : a;
+            }
+        });
+        composite(pixels, layer, argb);
+    }
+
+    private static void shift(final float[] mask, final float[] layer, final int width, final int height, final int delta, final boolean invert, final int fromRow, final int toRow) {
+        for (int y = fromRow ; y < toRow ; y++) {
+            final int sy = y - delta;
+            for (int x = 0 ; x < width ; x++) {
+                final int   sx    = x - delta;
+                final float value = sx < 0 || sy < 0 || sx >= width || sy >= height ? 0f : mask[sy * width + sx];
+                layer[y * width + x] = invert ? 1f - value : value;
+            }
+        }
+    }
+
+    private static void blur(final float[] alpha, final float[] buffer, final int width, final int height, final double radius) {
+        final int boxRadius = (int) Math.round(radius / PASSES);
+        if (boxRadius < 1) { return; }
+        for (int pass = 0 ; pass < PASSES ; pass++) {
+            forLines(height, alpha.length, (from, to) -> boxBlur(alpha, buffer, width, boxRadius, 1, width, from, to));
+            forLines(width, alpha.length, (from, to) -> boxBlur(buffer, alpha, height, boxRadius, width, 1, from, to));
+        }
+    }
+
+    // Blurs the lines of src into dst with a running sum, step is the distance of two pixels in a line, stride the distance of two lines
+    private static void boxBlur(final float[] src, final float[] dst, final int length, final int radius, final int step, final int stride, final int fromLine, final int toLine) {
+        final float norm = 1f / (2 * radius + 1);
+        for (int line = fromLine ; line < toLine ; line++) {
+            final int start = line * stride;
+            float sum = 0;
+            for (int i = 0 ; i <= radius && i < length ; i++) { sum += src[start + i * step]; }
+            for (int i = 0 ; i < length ; i++) {
+                dst[start + i * step] = sum * norm;
+                final int in  = i + radius + 1;
+                final int out = i - radius;
+                if (in < length) { sum += src[start + in * step]; }
+                if (out >= 0) { sum -= src[start + out * step]; }
+            }
+        }
+    }
+
+    private static void composite(final int[] pixels, final float[] alpha, final int argb, final int from, final int to) {
+        final float colorAlpha = (argb >>> 24) / 255f;
+        final int   red        = (argb >> 16) & 0xFF;
+        final int   green      = (argb >> 8) & 0xFF;
+        final int   blue       = argb & 0xFF;
+        for (int i = from ; i < to ; i++) {
+            final float a = alpha[i] * colorAlpha;
+            if (a <= 0) { continue; }
+            final int   dst     = pixels[i];
+            final float inverse = 1f - a;
+            final int   outA    = Math.round(a * 255 + (dst >>> 24) * inverse);
+            final int   outR    = Math.round(a * red + ((dst >> 16) & 0xFF) * inverse);
+            final int   outG    = Math.round(a * green + ((dst >> 8) & 0xFF) * inverse);
+            final int   outB    = Math.round(a * blue + (dst & 0xFF) * inverse);
+            pixels[i] = outA << 24 | outR << 16 | outG << 8 | outB;
+        }
+    }
+
+    // Runs the action for all lines, split into bands across worker threads if the image is large enough
+    private static void forLines(final int lines, final int pixels, final LineAction action) {
+        if (pixels < parallelThreshold || lines < 2 * MIN_LINES) {
+            action.apply(0, lines);
+        } else {
+            final int band = Math.max(MIN_LINES, lines / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            new LineTask(action, 0, lines, band).invoke();
+        }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    @FunctionalInterface
+    private interface LineAction {
+        void apply(int from, int to);
+    }
+
+    private static final class LineTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final LineAction action;
+        private final int        from;
+        private final int        to;
+        private final int        band;
+
+
+        private LineTask(final LineAction action, final int from, final int to, final int band) {
+            this.action = action;
+            this.from   = from;
+            this.to     = to;
+            this.band   = band;
+        }
+
+
+        @Override protected void compute() {
+            if (to - from <= band) {
+                action.apply(from, to);
+            } else {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new LineTask(action, from, mid, band), new LineTask(action, mid, to, band));
+            }
+        }
+    }
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2020 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.BlurType;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.stage.Window;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Global cache of pre-rendered neumorphic shapes.
+ * Rendering the double shadow is the expensive part of every redraw, controls
+ * with the same shape, size, colors and style share one rendered image which
+ * they simply blit into their canvas. The cache is bounded by the number of
+ * bytes of all cached images and evicts the least recently used sprites.
+ * Rectangular and pill shapes are rendered as nine-slice sprites, only the
+ * corners and a one pixel wide part of the edges are rendered and the flat
+ * center is stretched when drawing. This makes the costs of a resize
+ * independent of the size of the control.
+ * Texts and marks (e.g. the check mark of a check box) with a glow are cached
+ * as sprites too, so that the glow effect is only applied once and not on
+ * every redraw.
+ * Sprites are rendered on demand and must be requested on the FX application thread.
+ */
+public class SpriteCache {
+    private static final long               DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+    private static final LongAdder          HITS              = new LongAdder();
+    private static final LongAdder          MISSES            = new LongAdder();
+    private static final Map<Object, Image> CACHE             = new LinkedHashMap<>(64, 0.75f, true);
+    private static       long               maxBytes          = DEFAULT_MAX_BYTES;
+    private static       long               bytes             = 0;
+
+
+    // ******************** Constructors **************************************
+    private SpriteCache() {}
+
+
+    // ******************** Methods *******************************************
+    /**
+     * Returns the sprite for the given neumorphic shape.
+     * The shape is filled with the given fill color at the given inset and is
+     * embossed (outer shadow), sunken (inner shadow) or flat (style == null).
+     * @param shape        CIRCULAR will be filled as oval, all other shapes as round rectangle
+     * @param width        the width of the sprite in logical pixels
+     * @param height       the height of the sprite in logical pixels
+     * @param inset        the distance of the filled shape from the sprite bounds
+     * @param arc          the arc width and height of the round rectangle
+     * @param fill         the fill color of the shape
+     * @param style        EMBOSSED, SUNKEN or null for a flat shape without shadows
+     * @param shadowRadius the radius of the shadows
+     * @param shadowOffset the offset of the shadows
+     * @param bright       the color of the bright shadow (top left)
+     * @param dark         the color of the dark shadow (bottom right)
+     * @param scale        the render scale (e.g. output scale of the window)
+     * @return the sprite for the given parameters
+     */
+    public static Sprite getSprite(final NShape shape, final double width, final double height, final double inset, final double arc, final Color fill,
+                                   final NStyle style, final double shadowRadius, final double shadowOffset, final Color bright, final Color dark, final double scale) {
+        return getSprite(shape, width, height, inset, arc, fill, style, shadowRadius, shadowOffset, bright, dark, scale, BlurType.TWO_PASS_BOX);
+    }
+    /**
+     * Returns the sprite for the given neumorphic shape with shadows that are
+     * blurred with the given blur type (e.g. ONE_PASS_BOX renders faster).
+     * @see #getSprite(NShape, double, double, double, double, Color, NStyle, double, double, Color, Color, double)
+     */
+    public static Sprite getSprite(final NShape shape, final double width, final double height, final double inset, final double arc, final Color fill,
+                                   final NStyle style, final double shadowRadius, final double shadowOffset, final Color bright, final Color dark, final double scale,
+                                   final BlurType blurType) {
+        final double sliceX;
+        final double sliceY;
+        if (NShape.CIRCULAR == shape) {
+            sliceX = 0;
+            sliceY = 0;
+        } else {
+            final double margin = Math.ceil(inset + arc * 0.5 + shadowRadius + shadowOffset) + 1;
+            sliceX = width  > 2 * margin + 1 ? margin : 0;
+            sliceY = height > 2 * margin + 1 ? margin : 0;
+        }
+        final double sourceWidth  = 0 == sliceX ? width  : 2 * sliceX + 1;
+        final double sourceHeight = 0 == sliceY ? height : 2 * sliceY + 1;
+
+        final Key key   = new Key(shape, sourceWidth, sourceHeight, inset, arc, fill, style, shadowRadius, shadowOffset, bright, dark, scale, blurType);
+        Image     image = CACHE.get(key);
+        if (null != image) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+            image = render(key);
+            CACHE.put(key, image);
+            bytes += getBytes(image);
+            evict();
+        }
+        return new Sprite(image, sourceWidth, sourceHeight, sliceX, sliceY, width, height);
+    }
+
+    /**
+     * Returns the sprite for the given text with a glow around it.
+     * The text is centered in the sprite, which is larger than the given
+     * bounds by the glow radius on each side.
+     * @param text       the text
+     * @param font       the font of the text
+     * @param fill       the color of the text
+     * @param maxWidth   the maximum width of the text, wider texts are condensed
+     * @param height     the height of the bounds of the text
+     * @param glowRadius the radius of the glow
+     * @param glowColor  the color of the glow
+     * @param scale      the render scale (e.g. output scale of the window)
+     * @param blurType   the blur type of the glow
+     * @return the sprite for the given parameters
+     */
+    public static Sprite getTextSprite(final String text, final Font font, final Color fill, final double maxWidth, final double height, final double glowRadius,
+                                       final Color glowColor, final double scale, final BlurType blurType) {
+        final TextKey key   = new TextKey(text, font, fill, maxWidth, height, glowRadius, glowColor, scale, blurType);
+        Image         image = CACHE.get(key);
+        if (null != image) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+            image = render(key);
+            CACHE.put(key, image);
+            bytes += getBytes(image);
+            evict();
+        }
+        final double padding = Math.ceil(glowRadius);
+        final double width    = maxWidth + 2 * padding;
+        final double h        = height + 2 * padding;
+        return new Sprite(image, width, h, 0, 0, width, h);
+    }
+
+    /**
+     * Returns the sprite for the given mark with a glow around it.
+     * The mark fills the given size and is centered in the sprite, which is
+     * larger than the mark by the glow radius on each side.
+     * @param mark       the mark
+     * @param size       the width and height of the mark
+     * @param fill       the color of the mark
+     * @param glowRadius the radius of the glow, 0 renders the mark without a glow
+     * @param glowColor  the color of the glow
+     * @param scale      the render scale (e.g. output scale of the window)
+     * @param blurType   the blur type of the glow
+     * @return the sprite for the given parameters
+     */
+    public static Sprite getMarkSprite(final Mark mark, final double size, final Color fill, final double glowRadius, final Color glowColor, final double scale,
+                                       final BlurType blurType) {
+        final MarkKey key   = new MarkKey(mark, size, fill, glowRadius, glowColor, scale, blurType);
+        Image         image = CACHE.get(key);
+        if (null != image) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+            image = render(key);
+            CACHE.put(key, image);
+            bytes += getBytes(image);
+            evict();
+        }
+        final double width = size + 2 * Math.ceil(glowRadius);
+        return new Sprite(image, width, width, 0, 0, width, width);
+    }
+
+    /**
+     * Returns the render scale of the window the given node is shown in or 1.0
+     * if the node is not part of a shown window.
+     * @param node the node that will draw the sprite
+     * @return the render scale of the window the node is shown in
+     */
+    public static double getRenderScale(final Node node) {
+        final Scene scene = null == node ? null : node.getScene();
+        if (null == scene) { return 1.0; }
+        final Window window = scene.getWindow();
+        if (null == window) { return 1.0; }
+        return Math.max(1.0, Math.max(window.getOutputScaleX(), window.getOutputScaleY()));
+    }
+
+    public static long getHits() { return HITS.sum(); }
+
+    public static long getMisses() { return MISSES.sum(); }
+
+    public static int getSize() { return CACHE.size(); }
+
+    public static long getBytes() { return bytes; }
+
+    public static long getMaxBytes() { return maxBytes; }
+    public static void setMaxBytes(final long maxBytes) {
+        SpriteCache.maxBytes = Helper.clamp(0, Long.MAX_VALUE, maxBytes);
+        evict();
+    }
+
+    public static void clear() {
+        CACHE.clear();
+        bytes = 0;
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    private static void evict() {
+        Iterator<Image> iterator = CACHE.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= getBytes(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static long getBytes(final Image image) { return (long) image.getWidth() * (long) image.getHeight() * 4L; }
+
+    private static Image render(final Key key) {
+        final double scale  = key.scale;
+        final double width  = Math.ceil(key.width * scale);
+        final double height = Math.ceil(key.height * scale);
+        final double inset  = key.inset * scale;
+        final double arc    = key.arc * scale;
+        final double radius = key.shadowRadius * scale;
+        final double offset = key.shadowOffset * scale;
+
+        final Canvas          canvas = new Canvas(width, height);
+        final GraphicsContext ctx    = canvas.getGraphicsContext2D();
+        if (null != key.style) {
+            switch (key.style) {
+                case SUNKEN  : ctx.setEffect(EffectCache.getInnerShadow(radius, offset, key.bright, key.dark, key.blurType)); break;
+                case EMBOSSED: ctx.setEffect(EffectCache.getOuterShadow(radius, offset, key.bright, key.dark, key.blurType)); break;
+            }
+        }
+        ctx.setFill(key.fill);
+        if (NShape.CIRCULAR == key.shape) {
+            ctx.fillOval(inset, inset, width - 2 * inset, height - 2 * inset);
+        } else {
+            ctx.fillRoundRect(inset, inset, width - 2 * inset, height - 2 * inset, arc, arc);
+        }
+
+        final SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        return canvas.snapshot(parameters, null);
+    }
+
+    private static Image render(final TextKey key) {
+        final double scale   = key.scale;
+        final double padding = Math.ceil(key.glowRadius) * scale;
+        final double width   = Math.ceil(key.maxWidth * scale + 2 * padding);
+        final double height  = Math.ceil(key.height * scale + 2 * padding);
+
+        final Canvas          canvas = new Canvas(width, height);
+        final GraphicsContext ctx    = canvas.getGraphicsContext2D();
+        ctx.setTextAlign(TextAlignment.CENTER);
+        ctx.setTextBaseline(VPos.CENTER);
+        ctx.setFont(new Font(key.font.getName(), key.font.getSize() * scale));
+        ctx.setFill(key.fill);
+        ctx.setEffect(EffectCache.getGlow(key.glowRadius * scale, key.glowColor, key.blurType));
+        ctx.fillText(key.text, width * 0.5, height * 0.5, key.maxWidth * scale);
+
+        final SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        return canvas.snapshot(parameters, null);
+    }
+
+    private static Image render(final MarkKey key) {
+        final double scale   = key.scale;
+        final double padding = Math.ceil(key.glowRadius) * scale;
+        final double size    = key.size * scale;
+        final double width   = Math.ceil(size + 2 * padding);
+
+        final Canvas          canvas = new Canvas(width, width);
+        final GraphicsContext ctx    = canvas.getGraphicsContext2D();
+        ctx.setFill(key.fill);
+        if (key.glowRadius > 0) { ctx.setEffect(EffectCache.getGlow(key.glowRadius * scale, key.glowColor, key.blurType)); }
+        switch (key.mark) {
+            case CHECK:
+                ctx.beginPath();
+                ctx.moveTo(padding, padding + size * 0.5125);
+                ctx.lineTo(padding + size * 0.1541666666, padding + size * 0.3583333);
+                ctx.lineTo(padding + size * 0.375, padding + size * 0.56666666);
+                ctx.lineTo(padding + size * 0.845833333, padding + size * 0.0833333333);
+                ctx.lineTo(padding + size, padding + size * 0.2375);
+                ctx.lineTo(padding + size * 0.375, padding + size * 0.875);
+                ctx.lineTo(padding, padding + size * 0.5125);
+                ctx.closePath();
+                ctx.fill();
+                break;
+            case DOT:
+                ctx.fillOval(padding, padding, size, size);
+                break;
+        }
+
+        final SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        return canvas.snapshot(parameters, null);
+    }
+
+
+    // ******************** Inner Classes *************************************
+    public enum Mark { CHECK, DOT }
+
+    public static final class Sprite {
+        private final Image  image;
+        private final double sourceWidth;
+        private final double sourceHeight;
+        private final double sliceX;
+        private final double sliceY;
+        private final double width;
+        private final double height;
+
+
+        private Sprite(final Image image, final double sourceWidth, final double sourceHeight, final double sliceX, final double sliceY, final double width, final double height) {
+            this.image        = image;
+            this.sourceWidth  = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.sliceX       = sliceX;
+            this.sliceY       = sliceY;
+            this.width        = width;
+            this.height       = height;
+        }
+
+
+        public Image getImage() { return image; }
+
+        public double getWidth() { return width; }
+
+        public double getHeight() { return height; }
+
+        public boolean isNineSlice() { return sliceX > 0 || sliceY > 0; }
+
+        public void draw(final GraphicsContext ctx, final double x, final double y) {
+            if (!isNineSlice()) {
+                ctx.drawImage(image, x, y, width, height);
+                return;
+            }
+            final double scaleX  = image.getWidth() / sourceWidth;
+            final double scaleY  = image.getHeight() / sourceHeight;
+            final int    columns = sliceX > 0 ? 3 : 1;
+            final int    rows    = sliceY > 0 ? 3 : 1;
+            for (int column = 0 ; column < columns ; column++) {
+                final double sx = sliceStart(column, columns, sliceX, sourceWidth);
+                final double sw = sliceEnd(column, columns, sliceX, sourceWidth) - sx;
+                final double dx = sliceStart(column, columns, sliceX, width);
+                final double dw = sliceEnd(column, columns, sliceX, width) - dx;
+                for (int row = 0 ; row < rows ; row++) {
+                    final double sy = sliceStart(row, rows, sliceY, sourceHeight);
+                    final double sh = sliceEnd(row, rows, sliceY, sourceHeight) - sy;
+                    final double dy = sliceStart(row, rows, sliceY, height);
+                    final double dh = sliceEnd(row, rows, sliceY, height) - dy;
+                    ctx.drawImage(image, sx * scaleX, sy * scaleY, sw * scaleX, sh * scaleY, x + dx, y + dy, dw, dh);
+                }
+            }
+        }
+
+        /**
+         * Draws the sprite with the given opacity, used to cross fade between sprites
+         * @param ctx     the graphics context to draw into
+         * @param x       the x position
+         * @param y       the y position
+         * @param opacity the opacity in the range 0 - 1
+         */
+        public void draw(final GraphicsContext ctx, final double x, final double y, final double opacity) {
+            if (opacity <= 0) { return; }
+            if (opacity >= 1) {
+                draw(ctx, x, y);
+                return;
+            }
+            final double globalAlpha = ctx.getGlobalAlpha();
+            ctx.setGlobalAlpha(globalAlpha * opacity);
+            draw(ctx, x, y);
+            ctx.setGlobalAlpha(globalAlpha);
+        }
+
+        private static double sliceStart(final int index, final int count, final double slice, final double length) {
+            if (1 == count) { return 0; }
+            switch (index) {
+                case 0 : return 0;
+                case 1 : return slice;
+                default: return length - slice;
+            }
+        }
+
+        private static double sliceEnd(final int index, final int count, final double slice, final double length) {
+            if (1 == count) { return length; }
+            switch (index) {
+                case 0 : return slice;
+                case 1 : return length - slice;
+                default: return length;
+            }
+        }
+    }
+
+    private static final class Key {
+        private final NShape   shape;
+        private final double   width;
+        private final double   height;
+        private final double   inset;
+        private final double   arc;
+        private final Color    fill;
+        private final NStyle   style;
+        private final double   shadowRadius;
+        private final double   shadowOffset;
+        private final Color    bright;
+        private final Color    dark;
+        private final double   scale;
+        private final BlurType blurType;
+        private final int      hashCode;
+
+
+        private Key(final NShape shape, final double width, final double height, final double inset, final double arc, final Color fill,
+                    final NStyle style, final double shadowRadius, final double shadowOffset, final Color bright, final Color dark, final double scale,
+                    final BlurType blurType) {
+            this.shape        = NShape.CIRCULAR == shape ? NShape.CIRCULAR : NShape.RECTANGULAR;
+            this.width        = width;
+            this.height       = height;
+            this.inset        = inset;
+            this.arc          = arc;
+            this.fill         = fill;
+            this.style        = style;
+            this.shadowRadius = shadowRadius;
+            this.shadowOffset = shadowOffset;
+            this.bright       = bright;
+            this.dark         = dark;
+            this.scale        = scale;
+            this.blurType     = null == style ? null : blurType;
+            this.hashCode     = Objects.hash(this.shape, width, height, inset, arc, fill, style, shadowRadius, shadowOffset, bright, dark, scale, this.blurType);
+        }
+
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof Key)) { return false; }
+            final Key key = (Key) o;
+            return shape == key.shape &&
+                   style == key.style &&
+                   blurType == key.blurType &&
+                   Double.compare(key.width, width) == 0 &&
+                   Double.compare(key.height, height) == 0 &&
+                   Double.compare(key.inset, inset) == 0 &&
+                   Double.compare(key.arc, arc) == 0 &&
+                   Double.compare(key.shadowRadius, shadowRadius) == 0 &&
+                   Double.compare(key.shadowOffset, shadowOffset) == 0 &&
+                   Double.compare(key.scale, scale) == 0 &&
+                   Objects.equals(fill, key.fill) &&
+                   Objects.equals(bright, key.bright) &&
+                   Objects.equals(dark, key.dark);
+        }
+
+        @Override public int hashCode() { return hashCode; }
+    }
+
+    private static final class TextKey {
+        private final String   text;
+        private final Font     font;
+        private final Color    fill;
+        private final double   maxWidth;
+        private final double   height;
+        private final double   glowRadius;
+        private final Color    glowColor;
+        private final double   scale;
+        private final BlurType blurType;
+        private final int      hashCode;
+
+
+        private TextKey(final String text, final Font font, final Color fill, final double maxWidth, final double height, final double glowRadius,
+                        final Color glowColor, final double scale, final BlurType blurType) {
+            this.text       = text;
+            this.font       = font;
+            this.fill       = fill;
+            this.maxWidth   = maxWidth;
+            this.height     = height;
+            this.glowRadius = glowRadius;
+            this.glowColor  = glowColor;
+            this.scale      = scale;
+            this.blurType   = blurType;
+            this.hashCode   = Objects.hash(text, font, fill, maxWidth, height, glowRadius, glowColor, scale, blurType);
+        }
+
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof TextKey)) { return false; }
+            final TextKey key = (TextKey) o;
+            return blurType == key.blurType &&
+                   Double.compare(key.maxWidth, maxWidth) == 0 &&
+                   Double.compare(key.height, height) == 0 &&
+                   Double.compare(key.glowRadius, glowRadius) == 0 &&
+                   Double.compare(key.scale, scale) == 0 &&
+                   Objects.equals(text, key.text) &&
+                   Objects.equals(font, key.font) &&
+                   Objects.equals(fill, key.fill) &&
+                   Objects.equals(glowColor, key.glowColor);
+        }
+
+        @Override public int hashCode() { return hashCode; }
+    }
+
+    private static final class MarkKey {
+        private final Mark     mark;
+        private final double   size;
+        private final Color    fill;
+        private final double   glowRadius;
+        private final Color    glowColor;
+        private final double   scale;
+        private final BlurType blurType;
+        private final int      hashCode;
+
+
+        private MarkKey(final Mark mark, final double size, final Color fill, final double glowRadius, final Color glowColor, final double scale, final BlurType blurType) {
+            this.mark       = mark;
+            this.size       = size;
+            this.fill       = fill;
+            this.glowRadius = glowRadius;
+            this.glowColor  = glowColor;
+            this.scale      = scale;
+            this.blurType   = blurType;
+            this.hashCode   = Objects.hash(mark, size, fill, glowRadius, glowColor, scale, blurType);
+        }
+
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof MarkKey)) { return false; }
+            final MarkKey key = (MarkKey) o;
+            return mark == key.mark &&
+                   blurType == key.blurType &&
+                   Double.compare(key.size, size) == 0 &&
+                   Double.compare(key.glowRadius, glowRadius) == 0 &&
+                   Double.compare(key.scale, scale) == 0 &&
+                   Objects.equals(fill, key.fill) &&
+                   Objects.equals(glowColor, key.glowColor);
+        }
+
+        @Override public int hashCode() { return hashCode; }
+    }
+}
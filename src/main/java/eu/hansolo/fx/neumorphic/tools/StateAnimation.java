@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import javafx.animation.Interpolator;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.util.Duration;
+
+
+/**
+ * Animates a value between 0 and 1 (e.g. the progress of a state change)
+ * on the shared AnimationClock. The given callback is called whenever the
+ * value changed, controls usually request a redraw in it and use the value
+ * to interpolate between their cached sprites.
+ * Changes of controls that are not shown are applied immediately.
+ */
+public class StateAnimation implements AnimationClock.Tickable {
+    public  static final Duration DEFAULT_DURATION = Duration.millis(150);
+    private        final Node     node;
+    private        final Runnable onUpdate;
+    private              long     durationNanos;
+    private              double   value;
+    private              double   from;
+    private              double   to;
+    private              long     start;
+
+
+    // ******************** Constructors **************************************
+    public StateAnimation(final Node node, final Runnable onUpdate) {
+        this(node, DEFAULT_DURATION, onUpdate);
+    }
+    public StateAnimation(final Node node, final Duration duration, final Runnable onUpdate) {
+        this.node          = node;
+        this.onUpdate      = onUpdate;
+        this.durationNanos = (long) (duration.toMillis() * 1_000_000);
+        this.value         = 0;
+        this.from          = 0;
+        this.to            = 0;
+        this.start         = -1;
+    }
+
+
+    // ******************** Methods *******************************************
+    public double getValue() { return value; }
+    /**
+     * Sets the value immediately and stops a running animation
+     * @param value the new value in the range 0 - 1
+     */
+    public void setValue(final double value) {
+        AnimationClock.remove(this);
+        this.value = Helper.clamp(0.0, 1.0, value);
+        this.to    = this.value;
+        onUpdate.run();
+    }
+
+    public Duration getDuration() { return Duration.millis(durationNanos / 1_000_000.0); }
+    public void setDuration(final Duration duration) { durationNanos = (long) (duration.toMillis() * 1_000_000); }
+
+    public boolean isRunning() { return value != to; }
+
+    /**
+     * Animates the value from its current value to the given target
+     * @param target the target value in the range 0 - 1
+     */
+    public void animateTo(final double target) {
+        final double clampedTarget = Helper.clamp(0.0, 1.0, target);
+        // Already at the target or running towards it
+        if (clampedTarget == to) { return; }
+        if (!AnimationClock.isEnabled() || durationNanos <= 0 || !isShowing()) {
+            setValue(clampedTarget);
+            return;
+        }
+        from  = value;
+        to    = clampedTarget;
+        start = -1;
+        AnimationClock.add(this);
+    }
+
+    private boolean isShowing() {
+        final Scene scene = node.getScene();
+        return null != scene && null != scene.getWindow() && scene.getWindow().isShowing();
+    }
+
+    @Override public boolean tick(final long now) {
+        if (start < 0) { start = now; }
+        // Shorten the animation if it starts somewhere in between
+        final double distance = Math.abs(to - from);
+        final double fraction = distance > 0 ? Helper.clamp(0.0, 1.0, (now - start) / (durationNanos * distance)) : 1.0;
+        value = fraction < 1.0 ? Interpolator.EASE_BOTH.interpolate(from, to, fraction) : to;
+        onUpdate.run();
+        return fraction < 1.0;
+    }
+}
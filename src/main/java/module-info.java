@@ -1,6 +1,7 @@
 module eu.hansolo.fx.neumorphic {
     // Java
     requires java.base;
+    requires jdk.jfr;
 
     // Java-FX
     requires transitive javafx.base;
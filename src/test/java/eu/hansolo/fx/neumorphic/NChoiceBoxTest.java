@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Skin;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+
+public class NChoiceBoxTest {
+    private static final int          CYCLES     = 200;
+    private static final long         GC_TIMEOUT = 10;
+    private static final List<String> ITEMS      = List.of("Item 1", "Item 2", "Item 3");
+    private static       Stage        stage;
+    private static       StackPane    root;
+
+
+    @BeforeAll
+    public static void startup() throws Exception {
+        FxPlatform.startup();
+        FxPlatform.runAndWait(() -> {
+            root  = new StackPane();
+            stage = new Stage();
+            stage.setScene(new Scene(root, 200, 100));
+            stage.show();
+        });
+    }
+
+    @AfterAll
+    public static void shutdown() throws Exception {
+        FxPlatform.runAndWait(() -> stage.close());
+    }
+
+    @Test
+    public void removedChoiceBoxesAreCollected() throws Exception {
+        // The latency of the add/remove cycles is measured by the ChoiceBoxBenchmark
+        final List<WeakReference<Object>> references = new ArrayList<>();
+        for (int i = 0 ; i < CYCLES ; i++) { addAndRemove(references); }
+
+        // Removed controls and their skins must not be referenced by the scene, the render scheduler or listeners
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(GC_TIMEOUT);
+        while (countReachable(references) > 0 && System.nanoTime() < deadline) {
+            FxPlatform.runAndWait(Platform::requestNextPulse);
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(0, countReachable(references), () -> countReachable(references) + " of " + references.size() + " removed choice boxes and skins were not collected");
+    }
+
+    private static void addAndRemove(final List<WeakReference<Object>> references) {
+        FxPlatform.runAndWait(() -> {
+            final NChoiceBox<String> choiceBox = new NChoiceBox<>(new ArrayList<>(ITEMS));
+            root.getChildren().add(choiceBox);
+            root.applyCss();
+            root.layout();
+            final Skin<?> skin = choiceBox.getChoiceBox().getSkin();
+            assertNotNull(skin);
+            root.getChildren().remove(choiceBox);
+            references.add(new WeakReference<>(choiceBox));
+            references.add(new WeakReference<>(skin));
+        });
+    }
+
+    private static long countReachable(final List<WeakReference<Object>> references) {
+        return references.stream().filter(reference -> null != reference.get()).count();
+    }
+}
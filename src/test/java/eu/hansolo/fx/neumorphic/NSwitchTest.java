@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import eu.hansolo.fx.neumorphic.tools.RenderScheduler;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class NSwitchTest {
+    private static final int WARMUP_FRAMES = 2_000;
+    private static final int FRAMES        = 10_000;
+    private static final int RESET_DRAWS   = 32;
+
+
+    @BeforeAll
+    public static void startup() throws InterruptedException {
+        FxPlatform.startup();
+    }
+
+    /**
+     * Frames are requested and executed like in an animation, by requestRedraw()
+     * and the RenderScheduler. The only allocation that is allowed is the one of
+     * JavaFX itself: GraphicsContext creates a new state whenever clearRect()
+     * covers the whole canvas and resets its command buffer, which happens on
+     * every frame of a canvas that is shown.
+     */
+    @Test
+    public void redrawDoesNotAllocate() throws Exception {
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final double resetBytesPerFrame = FxPlatform.callAndWait(() -> {
+            final Canvas          canvas = new Canvas(100, 30);
+            final GraphicsContext ctx    = canvas.getGraphicsContext2D();
+            final WritableImage   image  = new WritableImage(10, 10);
+            final Runnable        frame  = () -> {
+                ctx.clearRect(0, 0, 100, 30);
+                // Enough commands to make the next clearRect() reset the buffer
+                for (int i = 0 ; i < RESET_DRAWS ; i++) { ctx.drawImage(image, i, 0); }
+            };
+            return measure(threadBean, frame);
+        });
+
+        for (boolean on : new boolean[] { true, false }) {
+            final double bytesPerFrame = FxPlatform.callAndWait(() -> {
+                final NSwitch nSwitch = new NSwitch();
+                new Scene(new Group(nSwitch));
+                nSwitch.setOn(on);
+                nSwitch.resize(100, 30);
+                RenderScheduler.flush();
+                return measure(threadBean, () -> {
+                    nSwitch.requestRedraw();
+                    RenderScheduler.flush();
+                });
+            });
+            assertTrue(bytesPerFrame <= resetBytesPerFrame, "NSwitch (on = " + on + ") allocated " + bytesPerFrame + " bytes per frame, JavaFX allocates " + resetBytesPerFrame);
+        }
+    }
+
+    private static double measure(final com.sun.management.ThreadMXBean threadBean, final Runnable frame) {
+        // The first frames render the sprites and warm up the JIT
+        for (int i = 0 ; i < WARMUP_FRAMES ; i++) { frame.run(); }
+        final long threadId = Thread.currentThread().getId();
+        final long before   = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0 ; i < FRAMES ; i++) { frame.run(); }
+        return (threadBean.getThreadAllocatedBytes(threadId) - before) / (double) FRAMES;
+    }
+}
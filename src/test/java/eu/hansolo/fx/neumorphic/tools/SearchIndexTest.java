@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class SearchIndexTest {
+    private static final int  ITEM_COUNT = 20_000;
+    private static final int  BLOCKED_AT = 10_000;
+    private static final int  BATCH_SIZE = 2_500;
+    private static final long TIMEOUT    = 10;
+
+
+    @Test
+    public void searchDuringBuildIsCompleteAfterBuild() throws Exception {
+        final List<String>        items   = IntStream.range(0, ITEM_COUNT).mapToObj(i -> "item" + i).collect(Collectors.toList());
+        final CountDownLatch      release = new CountDownLatch(1);
+        final SearchIndex<String> index   = new SearchIndex<>(item -> {
+            // Stops the build after the first chunks were published
+            if (item.equals(items.get(BLOCKED_AT))) { await(release); }
+            return item;
+        });
+        index.setItems(items);
+        waitFor(() -> index.getIndexedCount() >= SearchIndex.DEFAULT_CHUNK_SIZE);
+        final int indexedCount = index.getIndexedCount();
+        assertTrue(indexedCount < ITEM_COUNT);
+
+        // Search and refine the query while the build is running
+        assertEquals(expected(items, "item1", indexedCount), index.search("item1").get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(expected(items, "item12", indexedCount), index.search("item12").get(TIMEOUT, TimeUnit.SECONDS));
+
+        release.countDown();
+        waitFor(index::isComplete);
+
+        // The refined queries have to contain the items that were indexed after the first search
+        assertEquals(expected(items, "item123", ITEM_COUNT), index.search("item123").get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(expected(items, "item1234", ITEM_COUNT), index.search("item1234").get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(expected(items, "item1", ITEM_COUNT), index.search("item1").get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(expected(items, "34", ITEM_COUNT), index.search("34").get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void batchesThatFinishOutOfOrderAreIndexed() throws Exception {
+        final List<String>        items = IntStream.range(0, ITEM_COUNT).mapToObj(i -> "item" + i).collect(Collectors.toList());
+        final List<Runnable>      tasks = new ArrayList<>();
+        final SearchIndex<String> index = new SearchIndex<>(item -> item, tasks::add);
+        for (int start = 0 ; start < ITEM_COUNT ; start += BATCH_SIZE) { index.addItems(items.subList(start, start + BATCH_SIZE)); }
+
+        // Builds the last batch first
+        for (int i = tasks.size() - 1 ; i >= 0 ; i--) { tasks.remove(i).run(); }
+        assertTrue(index.isComplete());
+
+        final Future<List<String>> result = index.search("item1");
+        tasks.remove(0).run();
+        assertEquals(expected(items, "item1", ITEM_COUNT), result.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void concurrentlyAddedBatchesAreIndexed() throws Exception {
+        final List<String>        items    = IntStream.range(0, ITEM_COUNT).mapToObj(i -> "item" + i).collect(Collectors.toList());
+        final ExecutorService     executor = Executors.newFixedThreadPool(4);
+        final SearchIndex<String> index    = new SearchIndex<>(item -> item, executor);
+        try {
+            for (int start = 0 ; start < ITEM_COUNT ; start += BATCH_SIZE) { index.addItems(items.subList(start, start + BATCH_SIZE)); }
+            waitFor(index::isComplete);
+            assertEquals(expected(items, "item1", ITEM_COUNT), index.search("item1").get(TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> expected(final List<String> items, final String query, final int count) {
+        final List<String> prefixMatches = new ArrayList<>();
+        final List<String> otherMatches  = new ArrayList<>();
+        for (String item : items.subList(0, count)) {
+            if (item.startsWith(query)) {
+                prefixMatches.add(item);
+            } else if (item.contains(query)) {
+                otherMatches.add(item);
+            }
+        }
+        prefixMatches.addAll(otherMatches);
+        return prefixMatches;
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(final Condition condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!condition.isMet()) {
+            assertTrue(System.nanoTime() < deadline, "Timeout");
+            Thread.sleep(1);
+        }
+    }
+
+
+    // ******************** Inner Classes *************************************
+    private interface Condition {
+        boolean isMet();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 by Gerrit Grunwald
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.hansolo.fx.neumorphic;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Starts the JavaFX platform once per JVM and executes code on the FX
+ * application thread. Shared by the unit tests and the benchmarks, the test,
+ * jmh and stress tasks configure a headless Monocle platform with the
+ * software pipeline, so no display or GPU is needed.
+ */
+public class FxPlatform {
+    private static final Object  LOCK    = new Object();
+    private static final long    TIMEOUT = 30;
+    private static       boolean started = false;
+
+
+    // ******************** Constructors **************************************
+    private FxPlatform() {}
+
+
+    // ******************** Methods *******************************************
+    public static void startup() throws InterruptedException {
+        synchronized (LOCK) {
+            if (started) { return; }
+            final CountDownLatch latch = new CountDownLatch(1);
+            Platform.startup(latch::countDown);
+            Platform.setImplicitExit(false);
+            if (!latch.await(TIMEOUT, TimeUnit.SECONDS)) { throw new IllegalStateException("JavaFX platform did not start"); }
+            started = true;
+        }
+    }
+
+    public static void runAndWait(final Runnable runnable) {
+        try {
+            callAndWait(() -> {
+                runnable.run();
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static <T> T callAndWait(final Callable<T> callable) throws Exception {
+        if (Platform.isFxApplicationThread()) { return callable.call(); }
+        final CountDownLatch             latch  = new CountDownLatch(1);
+        final AtomicReference<T>         result = new AtomicReference<>();
+        final AtomicReference<Throwable> error  = new AtomicReference<>();
+        Platform.runLater(() -> {
+            try {
+                result.set(callable.call());
+            } catch (Throwable t) {
+                error.set(t);
+            } finally {
+                latch.countDown();
+            }
+        });
+        if (!latch.await(TIMEOUT, TimeUnit.SECONDS)) { throw new IllegalStateException("Timeout on the FX application thread"); }
+        if (error.get() instanceof Exception) { throw (Exception) error.get(); }
+        if (error.get() instanceof Error) { throw (Error) error.get(); }
+        return result.get();
+    }
+}